@@ -0,0 +1,118 @@
+package pri;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+// minimal benchmark harness (no JMH here : the project has no build manifest to pull it)
+// each benchmark is warmed up then measured by fixed time iterations on the calling thread,
+// the allocation is the one of the calling thread (com.sun.management.ThreadMXBean)
+// results are printed as a table, and appended as csv lines when a csv file is given, to be compared with a baseline
+
+public class Bench {
+
+	public interface Op {
+
+		// one operation, the returned value is consumed to keep the work alive
+		long run() throws Exception;
+	}
+
+	public int warmupIterations = 3;
+	public int measureIterations = 5;
+	public long iterationMillis = 500;
+
+	public String filter = null;  // only the benchmarks whose name contains it
+	public String csvFile = null; // results appended there too
+
+	static volatile long sink = 0;
+
+	com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	boolean headerPrinted = false;
+
+	// common arguments : [filter] [csv file]
+
+	public Bench( String[] args ) {
+
+		if( args.length > 0 && args[0].isEmpty() == false ) { filter = args[0]; }
+		if( args.length > 1 ) { csvFile = args[1]; }
+
+		warmupIterations = Integer.getInteger( "bench.warmup", warmupIterations );
+		measureIterations = Integer.getInteger( "bench.iterations", measureIterations );
+		iterationMillis = Long.getLong( "bench.millis", iterationMillis );
+	}
+
+	public boolean isSelected( String name ) {
+		return filter == null || name.contains( filter );
+	}
+
+	// linesPerOp and bytesPerOp give the throughputs (0 when not relevant)
+
+	public void measure( String name, long linesPerOp, long bytesPerOp, Op op ) throws Exception {
+
+		if( isSelected( name ) == false ) {
+			return;
+		}
+
+		for( int iteration = 0 ; iteration < warmupIterations ; iteration++ ) {
+			iterate( op );
+		}
+
+		long ops = 0;
+		long nanos = 0;
+		long allocated = 0;
+
+		for( int iteration = 0 ; iteration < measureIterations ; iteration++ ) {
+
+			long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+
+			ops += iterate( op );
+
+			nanos += System.nanoTime() - start;
+			allocated += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+		}
+
+		double nsPerOp = (double)nanos / ops;
+		double seconds = nanos / 1e9;
+		double linesPerSec = linesPerOp * ops / seconds;
+		double mbPerSec = bytesPerOp * ops / seconds / ( 1 << 20 );
+		double bytesAllocPerOp = (double)allocated / ops;
+		double allocMbPerSec = allocated / seconds / ( 1 << 20 );
+
+		if( headerPrinted == false ) {
+			System.out.format( "%-60s %14s %14s %10s %14s %12s\n", "benchmark", "ns/op", "lines/s", "MB/s", "alloc B/op", "alloc MB/s" );
+			headerPrinted = true;
+		}
+
+		System.out.format( Locale.ROOT, "%-60s %14.1f %14.0f %10.1f %14.1f %12.1f\n", name, nsPerOp, linesPerSec, mbPerSec, bytesAllocPerOp, allocMbPerSec );
+
+		if( csvFile != null ) {
+			try( PrintWriter csv = new PrintWriter( new FileWriter( csvFile, true )) )
+			{
+				csv.format( Locale.ROOT, "%s,%.1f,%.0f,%.1f,%.1f,%.1f\n", name, nsPerOp, linesPerSec, mbPerSec, bytesAllocPerOp, allocMbPerSec );
+			}
+			catch( IOException e ) {
+				System.out.format( "csv file %s not written : %s\n", csvFile, e.getMessage() );
+			}
+		}
+	}
+
+	long iterate( Op op ) throws Exception {
+
+		long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+		long ops = 0;
+		long value = 0;
+
+		do {
+			value += op.run();
+			ops++;
+		}
+		while( System.nanoTime() < deadline );
+
+		sink += value;
+		return ops;
+	}
+}
@@ -0,0 +1,618 @@
+package pri;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+// deterministic synthetic tree of C/C++/Pro*C sources with their msvc10 and gmake3 projects, for scale and regression runs of CodeCheck
+// the same seed and parameters give the same tree, byte for byte
+//
+// usage : CorpusGenerator <root> [seed=1] [files=200] [functions=2000] [density=3] [comments=0.2] [dead=0.1] [pc=0.2] [generated=0.5]
+//                                [unreferenced=0.05] [shadows=0.3] [orphans=0.05] [bodyLines=6] [crlf=true]
+//
+// the tree is written under <root>/prog, CodeCheck is to be run on that folder (absolute path as printed),
+// the expected answers are written into <root> :
+//   expected-unreferenced-functions.txt  lines of the functions check, in its order (unreferenced and unreachable functions)
+//   expected-unreferenced-sources.txt    lines of the sources check (sorted : the check lists them in walk order)
+//   expected-unreferenced-vcxproj.txt    lines of the vcxproj check (sorted too)
+//
+// only constructs on which the line heuristic of FileParser is right are generated :
+// one declaration per "type name( args )" line followed by a "{" line, no other "{" into the bodies,
+// fixed width function names (none is part of another), comments on their own lines,
+// the dead references (block comments over several lines, #if 0 groups, string literals) are the ones blanked by CLexer
+
+public class CorpusGenerator {
+
+	// ------- parameters -------------
+
+	long seed = 1;
+	int files = 200;           // sources (.c, .cpp, .pc), not counting the Pro*C generated ones
+	int functions = 2000;      // declared functions
+	double density = 3;        // average extra calls per function body
+	double comments = 0.2;     // ratio of comment lines into the bodies
+	double dead = 0.1;         // ratio of bodies with a dead reference to a function (unreferenced ones too)
+	double pc = 0.2;           // ratio of .pc sources
+	double generated = 0.5;    // ratio of .pc sources having their generated .c beside
+	double unreferenced = 0.05; // ratio of functions called from nowhere
+	double shadows = 0.3;      // ratio of unreferenced static functions having a called static namesake into another file
+	double orphans = 0.05;     // ratio of sources referenced by no project
+	int bodyLines = 6;         // statements per function body (besides the calls)
+	boolean crlf = true;
+
+	// ------- model -------------
+
+	class Function {
+
+		int id;
+		String name;
+		String type;
+		boolean isStatic;
+		SourceFile file;
+		boolean referenced = true;
+		boolean reachable = false; // from main or statis.h, through the calls
+		List<Function> calls = new ArrayList<Function>();
+		int lineNum; // of the declaration, from 1
+	}
+
+	class SourceFile {
+
+		int module;
+		String basename;
+		String ext;
+		boolean orphan;
+		boolean withGenerated; // .pc having its generated .c beside
+		boolean inVcxproj;
+		boolean inMakefile;
+		List<Function> functions = new ArrayList<Function>();
+		Path path;
+	}
+
+	Random random;
+	Path root;
+	Path prog;
+	int modules;
+
+	List<SourceFile> sources = new ArrayList<SourceFile>();
+	List<Function> declared = new ArrayList<Function>();
+	List<Function> callable = new ArrayList<Function>(); // referenced and not static
+	List<Function> statisFunctions = new ArrayList<Function>(); // referenced only through statis.h
+
+	static final String[] TYPES = { "int", "void", "long", "double", "BOOL" };
+
+	public CorpusGenerator( Path root ) {
+
+		this.root = root.toAbsolutePath().normalize();
+		this.prog = this.root.resolve( "prog" );
+	}
+
+	void set( String key, String value ) {
+
+		switch( key ) {
+			case "seed":         seed = Long.parseLong( value ); break;
+			case "files":        files = Integer.parseInt( value ); break;
+			case "functions":    functions = Integer.parseInt( value ); break;
+			case "density":      density = Double.parseDouble( value ); break;
+			case "comments":     comments = Double.parseDouble( value ); break;
+			case "dead":         dead = Double.parseDouble( value ); break;
+			case "pc":           pc = Double.parseDouble( value ); break;
+			case "generated":    generated = Double.parseDouble( value ); break;
+			case "unreferenced": unreferenced = Double.parseDouble( value ); break;
+			case "shadows":      shadows = Double.parseDouble( value ); break;
+			case "orphans":      orphans = Double.parseDouble( value ); break;
+			case "bodyLines":    bodyLines = Integer.parseInt( value ); break;
+			case "crlf":         crlf = Boolean.parseBoolean( value ); break;
+			default:
+				throw new IllegalArgumentException( "unknown parameter " + key );
+		}
+	}
+
+	static String moduleName( int module ) {
+		return String.format( "m%03d", module );
+	}
+
+	static String functionName( int id ) {
+		return String.format( "fn%07d", id ); // fixed width : no name is part of another
+	}
+
+	Function pick( List<Function> candidates, Function except ) {
+
+		if( candidates.isEmpty() || ( candidates.size() == 1 && candidates.get( 0 ) == except )) {
+			return null;
+		}
+
+		while( true ) {
+			Function f = candidates.get( random.nextInt( candidates.size() ));
+			if( f != except ) {
+				return f;
+			}
+		}
+	}
+
+	// ------- generation -------------
+
+	public void generate() throws IOException {
+
+		random = new Random( seed );
+		modules = Math.max( 1, files / 50 );
+
+		// sources, the basenames are unique over the whole tree (as the project references are by name)
+
+		for( int fileIndex = 0 ; fileIndex < files ; fileIndex++ ) {
+
+			SourceFile sf = new SourceFile();
+			sf.module = fileIndex % modules;
+			sf.basename = moduleName( sf.module ) + String.format( "_f%05d", fileIndex );
+
+			double kind = random.nextDouble();
+			sf.ext = ( kind < pc ) ? "pc" : ( kind < pc + ( 1 - pc ) * 0.2 ) ? "cpp" : "c";
+			sf.withGenerated = sf.ext.equals( "pc" ) && random.nextDouble() < generated;
+
+			sf.orphan = random.nextDouble() < orphans;
+			if( sf.orphan == false ) {
+				double where = random.nextDouble();
+				sf.inVcxproj = where < 0.8;
+				sf.inMakefile = where > 0.4;
+			}
+
+			String folder = sf.ext.equals( "pc" ) ? "PC" : "C";
+			sf.path = prog.resolve( folder ).resolve( moduleName( sf.module )).resolve( sf.basename + "." + sf.ext );
+			sources.add( sf );
+		}
+
+		// functions spread over the sources
+
+		for( int id = 0 ; id < functions ; id++ ) {
+
+			Function f = new Function();
+			f.id = id;
+			f.name = functionName( id );
+			f.type = TYPES[random.nextInt( TYPES.length )];
+			f.isStatic = random.nextDouble() < 0.2;
+			f.file = sources.get( random.nextInt( sources.size() ));
+			f.file.functions.add( f );
+			declared.add( f );
+		}
+
+		// who is referenced and from where : a static function only from its own file
+
+		for( Function f : declared ) {
+
+			if( random.nextDouble() < unreferenced ) {
+				f.referenced = false;
+			}
+			else if( f.isStatic == false && statisFunctions.size() < 3 && random.nextDouble() < 0.01 ) {
+				statisFunctions.add( f ); // referenced by the function pointers of statis.h only
+			}
+			else if( f.isStatic == false ) {
+				callable.add( f );
+			}
+		}
+
+		List<Function> mainCalls = new ArrayList<Function>();
+
+		for( Function f : declared ) {
+
+			if( f.referenced == false || statisFunctions.contains( f )) {
+				continue;
+			}
+
+			Function caller = pick( f.isStatic ? f.file.functions : declared, f );
+
+			if( caller == null ) {
+
+				// alone into its file, a static function can't be called from elsewhere
+				f.referenced = false;
+				continue;
+			}
+
+			caller.calls.add( f );
+		}
+
+		// a static function of the same file can't have been referenced by a function declared before it was known unreferenced :
+		// only the referenced ones are kept for the extra calls
+
+		for( Function f : declared ) {
+
+			int extraCalls = (int)Math.round( random.nextDouble() * 2 * density );
+
+			for( int call = 0 ; call < extraCalls ; call++ ) {
+
+				boolean local = random.nextDouble() < 0.3;
+				Function callee = null;
+
+				if( local ) {
+					List<Function> localReferenced = new ArrayList<Function>();
+					for( Function other : f.file.functions ) {
+						if( other.referenced && statisFunctions.contains( other ) == false ) {
+							localReferenced.add( other );
+						}
+					}
+					callee = pick( localReferenced, f );
+				}
+				else {
+					callee = pick( callable, f );
+				}
+
+				if( callee != null ) {
+					f.calls.add( callee );
+				}
+			}
+		}
+
+		// static namesakes : other functions (file local linkage), their calls are not uses of the unreferenced one
+
+		for( Function f : new ArrayList<Function>( declared ) ) {
+
+			if( f.isStatic == false || f.referenced || random.nextDouble() >= shadows ) {
+				continue;
+			}
+
+			SourceFile other = sources.get( random.nextInt( sources.size() ));
+			Function caller = pick( other.functions, null );
+
+			if( other == f.file || caller == null ) {
+				continue;
+			}
+
+			Function shadow = new Function();
+			shadow.id = f.id;
+			shadow.name = f.name;
+			shadow.type = f.type;
+			shadow.isStatic = true;
+			shadow.file = other;
+			other.functions.add( shadow );
+			declared.add( shadow );
+			caller.calls.add( shadow );
+		}
+
+		for( int call = 0 ; call < 10 ; call++ ) {
+			Function callee = pick( callable, null );
+			if( callee != null ) {
+				mainCalls.add( callee );
+			}
+		}
+
+		// the functions called by referenced ones only are dead too
+
+		List<Function> reached = new ArrayList<Function>( mainCalls );
+		reached.addAll( statisFunctions );
+
+		for( Function f : reached ) {
+			f.reachable = true;
+		}
+		for( int index = 0 ; index < reached.size() ; index++ ) {
+			for( Function callee : reached.get( index ).calls ) {
+				if( callee.reachable == false ) {
+					callee.reachable = true;
+					reached.add( callee );
+				}
+			}
+		}
+
+		// ------- files -------------
+
+		for( SourceFile sf : sources ) {
+			writeSource( sf );
+		}
+
+		writeMain( mainCalls );
+		writeStatis();
+		writeHeaders();
+		writeExcludedFolders();
+		writeProjects();
+		writeExpected();
+
+		System.out.format( "corpus written under %s : %d sources, %d functions (%d unreferenced, %d unreachable)\n", prog, sources.size(), declared.size(), countUnreferenced( false ), countUnreferenced( true ));
+	}
+
+	int countUnreferenced( boolean unreachable ) {
+
+		int count = 0;
+		for( Function f : declared ) {
+			if( f.reachable == false && f.referenced == unreachable ) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	String comment( Function about ) {
+
+		switch( random.nextInt( 3 )) {
+			case 0:  return "\t// " + about.name + " is not called from here";
+			case 1:  return "\t/* see " + about.name + " */";
+			default: return "\t/* previous version : total = " + about.name + "( count, buffer ); */";
+		}
+	}
+
+	List<String> deadReference( Function about ) {
+
+		String call = about.name + "( count, buffer );";
+
+		switch( random.nextInt( 3 )) {
+			case 0:  return Arrays.asList( "\t/*", "\ttotal += " + call, "\t*/" );
+			case 1:  return Arrays.asList( "#if 0", "\ttotal += " + call, "#endif" );
+			default: return Arrays.asList( "\ttrace( \"" + call + "\" );" );
+		}
+	}
+
+	void writeSource( SourceFile sf ) throws IOException {
+
+		List<String> lines = new ArrayList<String>();
+		boolean isPc = sf.ext.equals( "pc" );
+
+		lines.add( "/*" );
+		lines.add( " * module " + moduleName( sf.module ) + " : " + sf.basename + "." + sf.ext );
+		lines.add( " */" );
+		lines.add( "" );
+		lines.add( "#include \"" + moduleName( sf.module ) + ".h\"" );
+		if( isPc ) {
+			lines.add( "EXEC SQL INCLUDE sqlca;" );
+		}
+		lines.add( "" );
+
+		for( Function f : sf.functions ) {
+
+			f.lineNum = lines.size() + 1;
+			lines.add( ( f.isStatic ? "static " : "" ) + f.type + " " + f.name + "( int count, char *buffer )" );
+			lines.add( "{" );
+			lines.add( "\tint total = 0;" );
+
+			List<String> body = new ArrayList<String>();
+
+			for( Function callee : f.calls ) {
+				body.add( "\ttotal += " + callee.name + "( count, buffer );" );
+			}
+			for( int statement = 0 ; statement < bodyLines ; statement++ ) {
+				body.add( isPc && statement == 0 ? "\tEXEC SQL COMMIT WORK;" : "\ttotal = total * " + ( statement + 2 ) + " + count;" );
+			}
+
+			// comments interleaved, about any function (unreferenced ones too)
+			int commentCount = (int)Math.round( body.size() * comments / ( 1 - Math.min( comments, 0.9 )));
+			for( int commentIndex = 0 ; commentIndex < commentCount ; commentIndex++ ) {
+				body.add( random.nextInt( body.size() + 1 ), comment( declared.get( random.nextInt( declared.size() ))));
+			}
+
+			if( random.nextDouble() < dead ) {
+				body.addAll( random.nextInt( body.size() + 1 ), deadReference( declared.get( random.nextInt( declared.size() ))));
+			}
+
+			lines.addAll( body );
+			lines.add( "\treturn total;" );
+			lines.add( "}" );
+			lines.add( "" );
+		}
+
+		write( sf.path, lines );
+
+		if( sf.withGenerated ) {
+
+			// Pro*C output : same functions, the sql replaced by the runtime calls, removed by CodeCheck before the census
+
+			List<String> generatedLines = new ArrayList<String>();
+			generatedLines.add( "/* Result Sets Interface */" );
+			for( String line : lines ) {
+				if( line.trim().startsWith( "EXEC SQL" )) {
+					generatedLines.add( "\t/* " + line.trim() + " */" );
+					generatedLines.add( "\tsqlcxt( (void **)0, &sqlctx, &sqlstm, &sqlfpn );" );
+				}
+				else {
+					generatedLines.add( line );
+				}
+			}
+			write( sf.path.resolveSibling( sf.basename + ".c" ), generatedLines );
+		}
+	}
+
+	void writeMain( List<Function> mainCalls ) throws IOException {
+
+		List<String> lines = new ArrayList<String>();
+
+		lines.add( "#include <stdio.h>" );
+		lines.add( "" );
+		lines.add( "int main( int argc, char *argv[] )" );
+		lines.add( "{" );
+		lines.add( "\tint total = 0;" );
+		lines.add( "\tchar *buffer = argv[0];" );
+		for( Function callee : mainCalls ) {
+			lines.add( "\ttotal += " + callee.name + "( argc, buffer );" );
+		}
+		lines.add( "\treturn total;" );
+		lines.add( "}" );
+
+		write( prog.resolve( "C" ).resolve( "main" ).resolve( "main.c" ), lines );
+	}
+
+	void writeStatis() throws IOException {
+
+		// CodeCheck adds <prog>\C\calculs\statis.h to the use census (a literal name out of Windows)
+
+		List<String> lines = new ArrayList<String>();
+		lines.add( "/* function pointers of the statistics */" );
+
+		StringBuilder table = new StringBuilder( "static int (*statisFunctions[])( int, char * ) = { " );
+		for( Function f : statisFunctions ) {
+			table.append( f.name ).append( ", " );
+		}
+		table.append( "0 };" );
+		lines.add( table.toString() );
+
+		write( Paths.get( prog.toString() + "\\C\\calculs\\statis.h" ), lines );
+	}
+
+	void writeHeaders() throws IOException {
+
+		// prototypes, headers are not parsed by CodeCheck
+
+		for( int module = 0 ; module < modules ; module++ ) {
+
+			List<String> lines = new ArrayList<String>();
+			for( SourceFile sf : sources ) {
+				if( sf.module != module ) {
+					continue;
+				}
+				for( Function f : sf.functions ) {
+					if( f.isStatic == false ) {
+						lines.add( f.type + " " + f.name + "( int count, char *buffer );" );
+					}
+				}
+			}
+			write( prog.resolve( "C" ).resolve( moduleName( module )).resolve( moduleName( module ) + ".h" ), lines );
+		}
+	}
+
+	void writeExcludedFolders() throws IOException {
+
+		// content which must be ignored by the walk : obj folders, cJSON.c, codebase
+
+		List<String> lines = new ArrayList<String>();
+		lines.add( "int objOnly( int count )" );
+		lines.add( "{" );
+		lines.add( "\treturn count;" );
+		lines.add( "}" );
+
+		write( prog.resolve( "C" ).resolve( moduleName( 0 )).resolve( "obj" ).resolve( "objOnly.c" ), lines );
+		write( prog.resolve( "codebase" ).resolve( "codebaseOnly.c" ), lines );
+		write( prog.resolve( "C" ).resolve( "main" ).resolve( "cJSON.c" ), lines );
+	}
+
+	void writeProjects() throws IOException {
+
+		List<String> solution = new ArrayList<String>();
+		solution.add( "Microsoft Visual Studio Solution File, Format Version 11.00" );
+
+		for( int module = 0 ; module < modules ; module++ ) {
+
+			String name = moduleName( module );
+
+			List<String> vcxproj = new ArrayList<String>();
+			vcxproj.add( "<?xml version=\"1.0\" encoding=\"utf-8\"?>" );
+			vcxproj.add( "<Project DefaultTargets=\"Build\" ToolsVersion=\"4.0\" xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">" );
+			vcxproj.add( "  <ItemGroup>" );
+
+			List<String> makefile = new ArrayList<String>();
+			makefile.add( "OBJDIR = ../../obj" );
+			makefile.add( "OBJS = \\" );
+
+			for( SourceFile sf : sources ) {
+
+				if( sf.module != module ) {
+					continue;
+				}
+
+				String folder = sf.ext.equals( "pc" ) ? "PC" : "C";
+
+				if( sf.inVcxproj ) {
+					String tag = sf.ext.equals( "pc" ) ? "CustomBuild" : "ClCompile";
+					vcxproj.add( "    <" + tag + " Include=\"..\\" + folder + "\\" + name + "\\" + sf.basename + "." + sf.ext + "\" />" );
+				}
+				if( sf.inMakefile ) {
+					makefile.add( "\t$(OBJDIR)/" + sf.basename + ".o \\" );
+				}
+			}
+
+			if( module == 0 ) {
+				vcxproj.add( "    <ClCompile Include=\"..\\C\\main\\main.c\" />" );
+				makefile.add( "\t$(OBJDIR)/main.o \\" );
+			}
+
+			vcxproj.add( "  </ItemGroup>" );
+			vcxproj.add( "</Project>" );
+
+			makefile.add( "" );
+			makefile.add( "all: $(OBJS)" );
+			makefile.add( "\t$(CC) -o " + name + " $(OBJS)" );
+
+			write( prog.resolve( "msvc10" ).resolve( name + ".vcxproj" ), vcxproj );
+			write( prog.resolve( "gmake3" ).resolve( name ).resolve( "makefile" ), makefile );
+
+			solution.add( "Project(\"{8BC9CEB8-8B4A-11D0-8D11-00A0C91BC942}\") = \"" + name + "\", \"" + name + ".vcxproj\", \"{" + String.format( "%08X", module ) + "-0000-0000-0000-000000000000}\"" );
+			solution.add( "EndProject" );
+		}
+
+		// a project no longer part of the solution
+		write( prog.resolve( "msvc10" ).resolve( "old" ).resolve( "old_" + moduleName( 0 ) + ".vcxproj" ), List.of( "<Project>", "</Project>" ));
+
+		write( prog.resolve( "msvc10" ).resolve( "DMS.sln" ), solution );
+	}
+
+	void writeExpected() throws IOException {
+
+		// unreferenced and unreachable functions, as CodeCheck sorts them : by path from "prog" then line
+
+		List<Function> unrefs = new ArrayList<Function>();
+		for( Function f : declared ) {
+			if( f.reachable == false ) {
+				unrefs.add( f );
+			}
+		}
+
+		unrefs.sort( Comparator.comparing( ( Function f ) -> progPath( f.file.path.toString() )).thenComparingInt( f -> f.lineNum ));
+
+		List<String> lines = new ArrayList<String>();
+		for( Function f : unrefs ) {
+			lines.add( String.format( "%s function [%s@%s] declaration : %s(%d)", f.referenced ? "Unreachable" : "Unreferenced", f.type, f.name, f.file.path, f.lineNum ));
+		}
+		writeLf( root.resolve( "expected-unreferenced-functions.txt" ), lines );
+
+		lines = new ArrayList<String>();
+		for( SourceFile sf : sources ) {
+			if( sf.orphan ) {
+				lines.add( "**** unfounded source " + sf.path );
+			}
+		}
+		lines.sort( null );
+		writeLf( root.resolve( "expected-unreferenced-sources.txt" ), lines );
+
+		lines = new ArrayList<String>();
+		lines.add( "unreferenced vcxproj " + prog.resolve( "msvc10" ).resolve( "old" ).resolve( "old_" + moduleName( 0 ) + ".vcxproj" ));
+		writeLf( root.resolve( "expected-unreferenced-vcxproj.txt" ), lines );
+	}
+
+	static String progPath( String fullpath ) {
+
+		int progPos = fullpath.indexOf( "prog" );
+		return ( progPos == -1 ) ? fullpath : fullpath.substring( progPos );
+	}
+
+	void write( Path path, List<String> lines ) throws IOException {
+
+		Files.createDirectories( path.getParent() );
+		String eol = crlf ? "\r\n" : "\n";
+		Files.write( path, ( String.join( eol, lines ) + eol ).getBytes( StandardCharsets.ISO_8859_1 ));
+	}
+
+	void writeLf( Path path, List<String> lines ) throws IOException {
+
+		Files.createDirectories( path.getParent() );
+		Files.write( path, lines, StandardCharsets.ISO_8859_1 );
+	}
+
+	public static void main( String[] args ) throws Exception {
+
+		if( args.length == 0 ) {
+			System.out.println( "usage : CorpusGenerator <root> [key=value ...]" );
+			return;
+		}
+
+		CorpusGenerator generator = new CorpusGenerator( Paths.get( args[0] ));
+
+		for( int argIndex = 1 ; argIndex < args.length ; argIndex++ ) {
+
+			int equalPos = args[argIndex].indexOf( '=' );
+			if( equalPos == -1 ) {
+				throw new IllegalArgumentException( "parameter expected as key=value : " + args[argIndex] );
+			}
+			generator.set( args[argIndex].substring( 0, equalPos ), args[argIndex].substring( equalPos + 1 ));
+		}
+
+		generator.generate();
+	}
+}
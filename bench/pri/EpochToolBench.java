@@ -0,0 +1,107 @@
+package pri;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.Random;
+
+import pri.EpochTool.Direction;
+import pri.EpochTool.Format;
+
+// cost of the EpochTool conversions and adjusters (ns/op and allocated bytes/op), in UTC and in a zone with DST
+// usage : EpochToolBench [filter] [csv file]   (-Dbench.warmup=3 -Dbench.iterations=5 -Dbench.millis=500)
+// an operation is a single call, on epochs taken in turn from a fixed random set (2015 - 2030, DST changes included)
+
+public class EpochToolBench {
+
+	static final ZoneId[] ZONES = { ZoneId.of( "UTC" ), ZoneId.of( "Europe/Paris" ) };
+
+	static final int EPOCH_COUNT = 1024; // power of 2
+
+	interface EpochOp {
+		Long run( Long epoch ) throws Exception;
+	}
+
+	static Long[] epochs = new Long[EPOCH_COUNT];
+	static int next = 0;
+
+	static void measure( Bench bench, String name, EpochOp op ) throws Exception {
+
+		bench.measure( name, 0, 0, () -> {
+			Long output = op.run( epochs[ next++ & ( EPOCH_COUNT - 1 ) ] );
+			return ( output == null ) ? 0 : output;
+		});
+	}
+
+	public static void main( String[] args ) throws Exception {
+
+		Bench bench = new Bench( args );
+
+		Random random = new Random( 1 );
+		long from = 1420070400L; // 2015-01-01
+		long to = 1893456000L;   // 2030-01-01
+
+		for( int index = 0 ; index < EPOCH_COUNT ; index++ ) {
+			epochs[index] = from + (long)( random.nextDouble() * ( to - from ));
+		}
+
+		for( ZoneId zone : ZONES ) {
+
+			String suffix = "." + zone.getId();
+
+			// ------- conversions -------------
+
+			for( Format format : Format.values() ) {
+
+				String[] dates = new String[EPOCH_COUNT];
+				for( int index = 0 ; index < EPOCH_COUNT ; index++ ) {
+					dates[index] = EpochTool.convertToString( epochs[index], zone, format );
+				}
+
+				measure( bench, "convertToString." + format.name() + suffix, ( epoch ) -> (long)EpochTool.convertToString( epoch, zone, format ).length() );
+
+				try {
+					EpochTool.convertToEpoch( dates[0], format, zone );
+				}
+				catch( DateTimeException e ) {
+					continue; // not parsed back into a date time (no time fields ...)
+				}
+
+				bench.measure( "convertToEpoch." + format.name() + suffix, 0, 0, () -> EpochTool.convertToEpoch( dates[ next++ & ( EPOCH_COUNT - 1 ) ], format, zone ));
+			}
+
+			// ------- adjusters -------------
+
+			measure( bench, "adjustOnStartOfDay" + suffix,   ( epoch ) -> EpochTool.adjustOnStartOfDay( epoch, zone, false ));
+			measure( bench, "adjustOnEndOfDay" + suffix,     ( epoch ) -> EpochTool.adjustOnEndOfDay( epoch, zone, false ));
+			measure( bench, "adjustOnStartOfWeek" + suffix,  ( epoch ) -> EpochTool.adjustOnStartOfWeek( epoch, zone, false ));
+			measure( bench, "adjustOnEndOfWeek" + suffix,    ( epoch ) -> EpochTool.adjustOnEndOfWeek( epoch, zone, false ));
+			measure( bench, "adjustOnStartOfMonth" + suffix, ( epoch ) -> EpochTool.adjustOnStartOfMonth( epoch, zone, false ));
+			measure( bench, "adjustOnEndOfMonth" + suffix,   ( epoch ) -> EpochTool.adjustOnEndOfMonth( epoch, zone, false ));
+			measure( bench, "adjustOnStartOfYear" + suffix,  ( epoch ) -> EpochTool.adjustOnStartOfYear( epoch, zone, false ));
+			measure( bench, "adjustOnEndOfYear" + suffix,    ( epoch ) -> EpochTool.adjustOnEndOfYear( epoch, zone, false ));
+
+			// ------- shifts -------------
+
+			char[] periodUnits = { 's', 'H', 'D', 'M', 'A' };
+			long[] periods = { 900L, 1L, 1L, 1L, 1L };
+
+			for( int unitIndex = 0 ; unitIndex < periodUnits.length ; unitIndex++ ) {
+
+				char periodUnit = periodUnits[unitIndex];
+				Long period = periods[unitIndex];
+
+				for( Direction direction : Direction.values() ) {
+
+					String name = "(" + period + periodUnit + "," + direction + ")" + suffix;
+
+					measure( bench, "shiftFromPeriod" + name,  ( epoch ) -> EpochTool.shiftFromPeriod( epoch, direction, period, periodUnit, zone, false ));
+					measure( bench, "setToNearestData" + name, ( epoch ) -> EpochTool.setToNearestData( epoch, direction, period, periodUnit, zone, false ));
+				}
+			}
+
+			for( char typeBase : new char[] { '1', 'Q', 'H', 'J' } ) {
+				measure( bench, "shiftFromTypeBase(" + typeBase + ")" + suffix, ( epoch ) -> EpochTool.shiftFromTypeBase( epoch, Direction.forward, typeBase, zone, false ));
+			}
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package pri;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import pri.FileTable.FileItem;
+
+// throughput of the FileParser hot paths, by line shape, number of declared functions and file size
+// usage : FileParserBench [filter] [csv file]   (-Dbench.warmup=3 -Dbench.iterations=5 -Dbench.millis=500)
+// the census run serially : the allocation is measured on the calling thread only
+
+public class FileParserBench {
+
+	enum Shape { CODE, DECLARATION, COMMENT, MIXED }
+
+	static final int[] FUNCTION_COUNTS = { 1000, 10000, 50000 };
+	static final int[] FILE_LINES = { 100, 1000, 10000 };
+
+	static final int SAMPLE_LINES = 1000;   // lines of the single line benchmarks
+	static final int CENSUS_LINES = 20000;  // lines of a census operation, whatever the file size
+
+	// ------- generated content -------------
+
+	static String functionName( int id ) {
+		return String.format( "fn%05d_x", id ); // same length for all, none is part of another
+	}
+
+	static void addBlock( List<String> lines, Shape shape, int functionCount, Random random ) {
+
+		String name = functionName( random.nextInt( functionCount ));
+		String other = functionName( random.nextInt( functionCount ));
+
+		switch( shape ) {
+
+			case DECLARATION:
+				lines.add( "static int " + name + "( int count, char *buffer )" );
+				lines.add( "{" );
+				lines.add( "\treturn count + " + other + "( buffer );" );
+				lines.add( "}" );
+				break;
+
+			case CODE:
+				lines.add( "\tcount = " + name + "( count, buffer ) + " + other + "( 1 );" );
+				lines.add( "\tif( count > 0 ) { total += count; }" );
+				break;
+
+			case COMMENT:
+				lines.add( "// " + name + " is called by " + other );
+				lines.add( "/*" );
+				lines.add( " * " + name + " returns the count" );
+				lines.add( " */" );
+				break;
+
+			case MIXED:
+				Shape[] shapes = { Shape.DECLARATION, Shape.CODE, Shape.CODE, Shape.COMMENT };
+				addBlock( lines, shapes[random.nextInt( shapes.length )], functionCount, random );
+				break;
+		}
+	}
+
+	static byte[] source( Shape shape, int lineCount, int functionCount, long seed ) {
+
+		Random random = new Random( seed );
+		List<String> lines = new ArrayList<String>();
+
+		while( lines.size() < lineCount ) {
+			addBlock( lines, shape, functionCount, random );
+		}
+
+		StringBuilder text = new StringBuilder();
+		for( int lineIndex = 0 ; lineIndex < lineCount ; lineIndex++ ) {
+			text.append( lines.get( lineIndex )).append( "\r\n" );
+		}
+
+		return text.toString().getBytes( StandardCharsets.ISO_8859_1 );
+	}
+
+	static SourceReader decoded( byte[] content ) throws Exception {
+
+		SourceReader reader = new SourceReader( StandardCharsets.ISO_8859_1 );
+		reader.bytes = ByteBuffer.wrap( content );
+		reader.decode();
+		return reader;
+	}
+
+	static Reporter silentReporter() {
+
+		Reporter reporter = new Reporter( new PrintStream( OutputStream.nullOutputStream() ), null );
+		reporter.consoleLevel = Reporter.Level.RESULT; // nothing is queued by the census
+		return reporter;
+	}
+
+	// declared functions as the declaration census would have found them (into no file of the census)
+
+	static void declareFunctions( FileParser fp, FileParser.Result r, int functionCount ) {
+
+		for( int id = 0 ; id < functionCount ; id++ ) {
+			r.symbols.add( functionName( id ), "int", false, -1, id );
+		}
+	}
+
+	// ------- benchmarks -------------
+
+	public static void main( String[] args ) throws Exception {
+
+		Bench bench = new Bench( args );
+		FileParser fp = new FileParser();
+
+		for( Shape shape : Shape.values() ) {
+
+			byte[] content = source( shape, SAMPLE_LINES, 1000, 1 );
+			SourceReader reader = decoded( content );
+			char[] text = reader.lex().code; // as seen by the census, the non code blanked
+
+			bench.measure( "lex." + shape, reader.lineCount, content.length, () -> {
+
+				CLexer lexer = reader.lex();
+				long dead = 0;
+				for( int lineIndex = 0 ; lineIndex < reader.lineCount ; lineIndex++ ) {
+					if( lexer.dead[lineIndex] ) {
+						dead++;
+					}
+				}
+				return dead;
+			});
+
+			FileParser.DeclarationBounds bounds = fp.new DeclarationBounds();
+
+			bench.measure( "detectFunctionDeclaration." + shape, reader.lineCount, content.length, () -> {
+
+				long declarations = 0;
+				for( int lineIndex = 1 ; lineIndex < reader.lineCount ; lineIndex++ ) {
+					if( fp.detectFunctionDeclaration( lineIndex, text, reader.lineStarts[lineIndex - 1], reader.lineEnds[lineIndex - 1], text, reader.lineStarts[lineIndex], reader.lineEnds[lineIndex], bounds )) {
+						declarations++;
+					}
+				}
+				return declarations;
+			});
+
+			for( int functionCount : FUNCTION_COUNTS ) {
+
+				SourceReader useReader = decoded( source( shape, SAMPLE_LINES, functionCount, 2 ));
+				char[] useText = useReader.lex().code;
+
+				FileParser.Result r = fp.new Result();
+				declareFunctions( fp, r, functionCount );
+
+				for( boolean wholeIdentifiers : new boolean[] { true, false } ) {
+
+					FunctionMatcher matcher = new FunctionMatcher( r.symbols, wholeIdentifiers );
+					FunctionMatcher.LineScan scan = matcher.new LineScan();
+					int[] useCounts = new int[matcher.patternCount];
+					String mode = wholeIdentifiers ? "identifiers" : "substrings";
+
+					bench.measure( "detectFunctionUse." + mode + "." + shape + ".functions=" + functionCount, useReader.lineCount, useReader.textLength, () -> {
+
+						for( int lineIndex = 0 ; lineIndex < useReader.lineCount ; lineIndex++ ) {
+							fp.detectFunctionUse( 0, lineIndex + 1, useText, useReader.lineStarts[lineIndex], useReader.lineEnds[lineIndex], matcher, scan, useCounts, null );
+						}
+						return scan.hitCount;
+					});
+				}
+			}
+		}
+
+		benchCallGraph( bench );
+		benchCensus( bench );
+	}
+
+	static void benchCallGraph( Bench bench ) throws Exception {
+
+		// random calls (4 per function) collected by 4 workers, a few roots : graph build then reachability
+
+		for( int functionCount : FUNCTION_COUNTS ) {
+
+			Random random = new Random( functionCount );
+			List<CallGraph.Edges> workersEdges = new ArrayList<CallGraph.Edges>();
+
+			for( int worker = 0 ; worker < 4 ; worker++ ) {
+				CallGraph.Edges edges = new CallGraph.Edges();
+				for( int edge = 0 ; edge < functionCount ; edge++ ) {
+					edges.add( random.nextInt( functionCount ), random.nextInt( functionCount ));
+				}
+				edges.roots.set( random.nextInt( functionCount ));
+				workersEdges.add( edges );
+			}
+
+			long edgeCount = 4L * functionCount;
+
+			bench.measure( "callGraph.build.edges=" + edgeCount, edgeCount, 0, () -> new CallGraph( functionCount, workersEdges ).edgeCount() );
+
+			CallGraph graph = new CallGraph( functionCount, workersEdges );
+
+			bench.measure( "callGraph.reachable.edges=" + edgeCount, edgeCount, 0, () -> graph.reachable( graph.roots ).cardinality() );
+		}
+	}
+
+	static void benchCensus( Bench bench ) throws Exception {
+
+		Path folder = Files.createTempDirectory( "codecheck-bench" );
+		folder.toFile().deleteOnExit(); // deleted after its files (reverse order)
+		Reporter reporter = silentReporter();
+
+		// the symbol table of the declared functions, built once for the use census below (not part of its ops)
+
+		FileParser.Result[] declared = new FileParser.Result[FUNCTION_COUNTS.length];
+
+		for( int countIndex = 0 ; countIndex < FUNCTION_COUNTS.length ; countIndex++ ) {
+
+			int functionCount = FUNCTION_COUNTS[countIndex];
+			FileParser fp = new FileParser();
+
+			bench.measure( "declareFunctions.functions=" + functionCount, functionCount, 0, () -> {
+
+				FileParser.Result r = fp.new Result();
+				declareFunctions( fp, r, functionCount );
+				return r.symbols.size();
+			});
+
+			declared[countIndex] = fp.new Result();
+			declareFunctions( fp, declared[countIndex], functionCount );
+		}
+
+		for( Shape shape : Shape.values() ) {
+			for( int fileLines : FILE_LINES ) {
+
+				// files of the given size, CENSUS_LINES lines as a whole
+
+				FileTable table = new FileTable();
+				List<FileItem> fileItems = new ArrayList<FileItem>();
+				long bytes = 0;
+
+				for( int fileIndex = 0 ; fileIndex < Math.max( 1, CENSUS_LINES / fileLines ) ; fileIndex++ ) {
+
+					Path file = folder.resolve( shape + "_" + fileLines + "_" + fileIndex + ".c" );
+					byte[] content = source( shape, fileLines, 1000, fileIndex );
+					Files.write( file, content );
+					file.toFile().deleteOnExit();
+
+					fileItems.add( table.add( folder.toString(), file.getFileName().toString(), file.toString() ));
+					bytes += content.length;
+				}
+
+				long lines = (long)fileItems.size() * fileLines;
+				String suffix = shape + ".fileLines=" + fileLines;
+
+				bench.measure( "censusFunctionDeclaration." + suffix, lines, bytes, () -> {
+
+					FileParser fp = new FileParser();
+					FileParser.Result r = fp.new Result();
+					fp.censusFunctionDeclaration( fileItems, r, reporter );
+					return r.functionsCount;
+				});
+
+				for( int countIndex = 0 ; countIndex < FUNCTION_COUNTS.length ; countIndex++ ) {
+
+					// an op : the matcher built from the declared functions, the files read and scanned, the counts merged
+
+					FileParser fp = new FileParser();
+					FileParser.Result r = declared[countIndex];
+
+					bench.measure( "censusFunctionUse." + suffix + ".functions=" + FUNCTION_COUNTS[countIndex], lines, bytes, () -> {
+
+						Arrays.fill( r.symbols.useCounts, 0 );
+						fp.censusFunctionUse( fileItems, r, reporter );
+						return r.symbols.useCounts[0];
+					});
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package pri;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+import pri.FileParser.Declaration;
+import pri.FileParser.FileDeclarations;
+import pri.Reporter.Level;
+
+// on disk cache of the per file results of the declaration census (declarations, includes, line counts and code lines)
+// an entry is keyed by the file path and is valid while the file size/mtime (or, when only the mtime moved, the content hash) are unchanged
+
+public class AnalysisCache {
+
+	static final int MAGIC = 0x43434348; // "CCCH"
+	static final int VERSION = 6; // 2 : code lines decoded with the source charset of the parser, 3 : code lines blanked by CLexer, 4 : linkage and includes, 5 : braces and parentheses kept into the code lines, 6 : charset into the header
+
+	class Entry {
+
+		long size;
+		long mtime;
+		long hash;
+		FileDeclarations fd;
+	}
+
+	FileParser fp;
+	String cachePath;
+
+	Map<String,Entry> previous = new ConcurrentHashMap<String,Entry>(); // as loaded
+	Map<String,Entry> current = new ConcurrentHashMap<String,Entry>();  // files of this run, to be saved
+
+	public AtomicInteger reusedCount = new AtomicInteger( 0 );
+	public AtomicInteger parsedCount = new AtomicInteger( 0 );
+
+	public AnalysisCache( FileParser fp, String cachePath ) {
+
+		this.fp = fp;
+		this.cachePath = cachePath;
+	}
+
+	// ------- lookup -------------
+
+	FileDeclarations parseFunctionDeclaration( FileTable.FileItem fileItem, SourceReader reader ) throws IOException {
+
+		Path path = Paths.get( fileItem.fullpath );
+		BasicFileAttributes attrs = Files.readAttributes( path, BasicFileAttributes.class );
+
+		Entry entry = new Entry();
+		entry.size = attrs.size();
+		entry.mtime = attrs.lastModifiedTime().toMillis();
+
+		Entry cached = previous.get( fileItem.fullpath );
+
+		if( cached != null && cached.size == entry.size && cached.mtime == entry.mtime ) {
+
+			// unchanged
+			current.put( fileItem.fullpath, cached );
+			reusedCount.incrementAndGet();
+			return cached.fd;
+		}
+
+		reader.load( fileItem.fullpath );
+		entry.hash = hash( reader.bytes );
+
+		if( cached != null && cached.size == entry.size && cached.hash == entry.hash ) {
+
+			// only touched
+			cached.mtime = entry.mtime;
+			current.put( fileItem.fullpath, cached );
+			reusedCount.incrementAndGet();
+			return cached.fd;
+		}
+
+		// new or modified, parsed from the content already read
+
+		reader.decode();
+		entry.fd = fp.parseFunctionDeclaration( fileItem, reader );
+
+		current.put( fileItem.fullpath, entry );
+		parsedCount.incrementAndGet();
+		return entry.fd;
+	}
+
+	static long hash( ByteBuffer content ) {
+
+		CRC32C crc = new CRC32C();
+		crc.update( content.duplicate() );
+		return crc.getValue();
+	}
+
+	// ------- persistence -------------
+
+	public void load( Reporter reporter ) {
+
+		if( Files.exists( Paths.get( cachePath )) == false ) {
+			return;
+		}
+
+		try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( cachePath ), 1 << 16 )) )
+		{
+			if( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+				reporter.console( Level.WARNING, "analysis cache %s ignored : unknown format\n", cachePath );
+				return;
+			}
+
+			// the code lines were decoded with this charset
+			String charsetName = in.readUTF();
+			if( charsetName.equals( fp.sourceCharset.name() ) == false ) {
+				reporter.console( Level.WARNING, "analysis cache %s ignored : sources decoded as %s, now as %s\n", cachePath, charsetName, fp.sourceCharset.name() );
+				return;
+			}
+
+			int entryCount = in.readInt();
+
+			for( int entryIndex = 0 ; entryIndex < entryCount ; entryIndex++ ) {
+
+				String fullpath = in.readUTF();
+
+				Entry entry = new Entry();
+				entry.size = in.readLong();
+				entry.mtime = in.readLong();
+				entry.hash = in.readLong();
+				entry.fd = readFileDeclarations( in );
+
+				previous.put( fullpath, entry );
+			}
+		}
+		catch( IOException e ) {
+
+			// a damaged cache is only a slower run
+			reporter.console( Level.WARNING, "analysis cache %s ignored : %s\n", cachePath, e.getMessage() );
+			previous.clear();
+		}
+	}
+
+	public void save() throws IOException {
+
+		Path target = Paths.get( cachePath );
+		Path temp = Paths.get( cachePath + ".tmp" );
+
+		try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp.toFile() ), 1 << 16 )) )
+		{
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+			out.writeUTF( fp.sourceCharset.name() );
+			out.writeInt( current.size() );
+
+			for( Map.Entry<String,Entry> item : current.entrySet() ) {
+
+				Entry entry = item.getValue();
+
+				out.writeUTF( item.getKey() );
+				out.writeLong( entry.size );
+				out.writeLong( entry.mtime );
+				out.writeLong( entry.hash );
+				writeFileDeclarations( out, entry.fd );
+			}
+		}
+
+		Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+	}
+
+	void writeFileDeclarations( DataOutputStream out, FileDeclarations fd ) throws IOException {
+
+		out.writeInt( fd.parsingCount );
+		out.writeInt( fd.sourceLineCount );
+		out.writeInt( fd.pcFilesSourceLineCount );
+		out.writeInt( fd.cppFilesSourceLineCount );
+
+		out.writeInt( fd.declarations.size() );
+		for( Declaration declaration : fd.declarations ) {
+			out.writeUTF( declaration.functionName );
+			out.writeUTF( declaration.functionType );
+			out.writeBoolean( declaration.isStatic );
+			out.writeInt( declaration.lineNum );
+			out.writeInt( declaration.parsingId );
+		}
+
+		out.writeInt( fd.includes.size() );
+		for( String include : fd.includes ) {
+			out.writeUTF( include );
+		}
+
+		CodeLines code = fd.code;
+
+		out.writeInt( code.lineCount );
+		out.writeInt( code.count );
+		for( int index = 0 ; index < code.count ; index++ ) {
+			out.writeInt( code.lineNums[index] );
+			out.writeInt( code.lineEnds[index] );
+		}
+
+		byte[] text = new String( code.text, 0, code.textLength ).getBytes( StandardCharsets.UTF_8 );
+		out.writeInt( text.length );
+		out.write( text );
+	}
+
+	FileDeclarations readFileDeclarations( DataInputStream in ) throws IOException {
+
+		FileDeclarations fd = fp.new FileDeclarations();
+
+		fd.parsingCount = in.readInt();
+		fd.sourceLineCount = in.readInt();
+		fd.pcFilesSourceLineCount = in.readInt();
+		fd.cppFilesSourceLineCount = in.readInt();
+
+		int declarationCount = in.readInt();
+		fd.declarations = new ArrayList<Declaration>( declarationCount );
+
+		for( int index = 0 ; index < declarationCount ; index++ ) {
+			Declaration declaration = fp.new Declaration();
+			declaration.functionName = in.readUTF();
+			declaration.functionType = in.readUTF();
+			declaration.isStatic = in.readBoolean();
+			declaration.lineNum = in.readInt();
+			declaration.parsingId = in.readInt();
+			fd.declarations.add( declaration );
+		}
+
+		int includeCount = in.readInt();
+		fd.includes = new ArrayList<String>( includeCount );
+		for( int index = 0 ; index < includeCount ; index++ ) {
+			fd.includes.add( in.readUTF() );
+		}
+
+		CodeLines code = new CodeLines();
+
+		code.lineCount = in.readInt();
+		code.count = in.readInt();
+		code.lineNums = new int[code.count];
+		code.lineEnds = new int[code.count];
+		for( int index = 0 ; index < code.count ; index++ ) {
+			code.lineNums[index] = in.readInt();
+			code.lineEnds[index] = in.readInt();
+		}
+
+		byte[] text = new byte[in.readInt()];
+		in.readFully( text );
+		code.text = new String( text, StandardCharsets.UTF_8 ).toCharArray();
+		code.textLength = code.text.length;
+
+		fd.code = code;
+		return fd;
+	}
+}
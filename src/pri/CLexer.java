@@ -0,0 +1,321 @@
+package pri;
+
+import java.util.Arrays;
+
+// streaming C/C++/Pro*C lexer : the text of a file is copied with what is not code blanked, at the same offsets,
+// so that the declaration and use census only see code :
+//   comments (block ones over several lines, line ones continued by a \ too) are blanked with their delimiters,
+//   string and char literals keep their quotes, their content is blanked (not the name of an #include),
+//   the groups of #if 0 (and the #else/#elif groups of #if 1) are blanked up to their #endif, nested conditionals included
+// the state is carried from a line to the other, a line of the file is dead when it holds no code once blanked
+// the buffers are reused from a file to the other, thus a lexer is used by a single thread
+
+public class CLexer {
+
+	enum State { CODE, BLOCK_COMMENT, LINE_COMMENT, STRING, CHAR }
+
+	public char[] code = new char[1 << 16]; // text of the file with the non code blanked (same offsets, same line breaks)
+	public boolean[] dead = new boolean[1 << 12]; // by line : comment only, dead group of a conditional, blank line into a comment
+
+	State state;
+	int deadDepth;          // > 0 : into a dead group, number of nested conditionals opened in it
+	boolean deadUntilEndif; // the dead group does not end on #else/#elif (#else group of an #if 1)
+	boolean[] ifOne = new boolean[64]; // conditionals opened in live code : true for #if 1
+	int ifDepth;
+
+	public void lex( SourceReader reader ) {
+
+		if( code.length < reader.textLength ) {
+			code = new char[ Math.max( reader.textLength, code.length * 2 ) ];
+		}
+		if( dead.length < reader.lineCount ) {
+			dead = new boolean[ Math.max( reader.lineCount, dead.length * 2 ) ];
+		}
+
+		System.arraycopy( reader.text, 0, code, 0, reader.textLength );
+
+		state = State.CODE;
+		deadDepth = 0;
+		deadUntilEndif = false;
+		ifDepth = 0;
+
+		for( int lineIndex = 0 ; lineIndex < reader.lineCount ; lineIndex++ ) {
+			dead[lineIndex] = lexLine( reader.lineStarts[lineIndex], reader.lineEnds[lineIndex] );
+		}
+	}
+
+	// tell if the line code[start,end) is dead once blanked
+
+	boolean lexLine( int start, int end ) {
+
+		boolean blankLine = true;
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+			if( isBlank( code[chpos] ) == false ) {
+				blankLine = false;
+				break;
+			}
+		}
+
+		if( blankLine ) {
+
+			// a blank line is code, unless it is part of a comment or of a dead group
+
+			boolean isDead = ( state == State.BLOCK_COMMENT || deadDepth > 0 );
+			if( state != State.BLOCK_COMMENT ) {
+				state = State.CODE; // literals and line comments end with their line (no continuation)
+			}
+			return isDead;
+		}
+
+		boolean directive = false;
+		boolean include = false;
+
+		if( state == State.CODE ) {
+
+			int chpos = skipBlanks( start, end );
+
+			if( chpos < end && code[chpos] == '#' ) {
+
+				int wordStart = skipBlanks( chpos + 1, end );
+				int wordEnd = wordStart;
+				while( wordEnd < end && Character.isLetter( code[wordEnd] ) ) {
+					wordEnd++;
+				}
+
+				directive = true;
+				include = FileParser.regionEquals( code, wordStart, wordEnd, "include" );
+
+				if( deadDepth > 0 ) {
+					directiveIntoDeadGroup( wordStart, wordEnd, end );
+					blankComments( start, end ); // the comments are still to be followed
+					blank( start, end );
+					return true;
+				}
+
+				if( directiveIntoLiveCode( wordStart, wordEnd, end ) ) {
+					blankComments( start, end );
+					blank( start, end ); // opens a dead group
+					return true;
+				}
+			}
+		}
+
+		if( deadDepth > 0 ) {
+			blankComments( start, end );
+			blank( start, end );
+			return true;
+		}
+
+		return lexCode( start, end, directive && include ) == false;
+	}
+
+	// conditionals : the dead groups are nested into the live code only (a dead group is not reentered)
+
+	boolean directiveIntoLiveCode( int wordStart, int wordEnd, int end ) {
+
+		if( FileParser.regionEquals( code, wordStart, wordEnd, "if" ) ) {
+
+			int exprStart = skipBlanks( wordEnd, end );
+			int exprEnd = exprEnd( exprStart, end );
+
+			if( FileParser.regionEquals( code, exprStart, exprEnd, "0" ) ) {
+				deadDepth = 1;
+				deadUntilEndif = false;
+				return true;
+			}
+
+			pushIf( FileParser.regionEquals( code, exprStart, exprEnd, "1" ) );
+			return false;
+		}
+
+		if( FileParser.regionEquals( code, wordStart, wordEnd, "ifdef" ) || FileParser.regionEquals( code, wordStart, wordEnd, "ifndef" ) ) {
+			pushIf( false );
+			return false;
+		}
+
+		if( FileParser.regionEquals( code, wordStart, wordEnd, "else" ) || FileParser.regionEquals( code, wordStart, wordEnd, "elif" ) ) {
+
+			if( ifDepth > 0 && ifOne[ifDepth - 1] ) {
+
+				// the remaining groups of an #if 1 are dead (its #endif included)
+				ifDepth--;
+				deadDepth = 1;
+				deadUntilEndif = true;
+				return true;
+			}
+			return false;
+		}
+
+		if( FileParser.regionEquals( code, wordStart, wordEnd, "endif" ) ) {
+
+			if( ifDepth > 0 ) {
+				ifDepth--;
+			}
+		}
+
+		return false;
+	}
+
+	void directiveIntoDeadGroup( int wordStart, int wordEnd, int end ) {
+
+		if( FileParser.regionEquals( code, wordStart, wordEnd, "if" ) || FileParser.regionEquals( code, wordStart, wordEnd, "ifdef" ) || FileParser.regionEquals( code, wordStart, wordEnd, "ifndef" ) ) {
+			deadDepth++;
+		}
+		else if( FileParser.regionEquals( code, wordStart, wordEnd, "endif" ) ) {
+			deadDepth--;
+		}
+		else if( deadDepth == 1 && deadUntilEndif == false && ( FileParser.regionEquals( code, wordStart, wordEnd, "else" ) || FileParser.regionEquals( code, wordStart, wordEnd, "elif" ) ) ) {
+
+			// the next group of an #if 0 is live (the condition of an #elif is not evaluated), still to be closed by its #endif
+			deadDepth = 0;
+			pushIf( false );
+		}
+	}
+
+	void pushIf( boolean one ) {
+
+		if( ifDepth == ifOne.length ) {
+			ifOne = Arrays.copyOf( ifOne, ifDepth * 2 );
+		}
+		ifOne[ifDepth++] = one;
+	}
+
+	// end of the expression of a directive : before a comment or the end of the line, trailing blanks excluded
+
+	int exprEnd( int start, int end ) {
+
+		int exprEnd = start;
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+
+			if( code[chpos] == '/' && chpos + 1 < end && ( code[chpos + 1] == '/' || code[chpos + 1] == '*' ) ) {
+				break;
+			}
+			if( isBlank( code[chpos] ) == false ) {
+				exprEnd = chpos + 1;
+			}
+		}
+		return exprEnd;
+	}
+
+	// blank the non code of a live line, tell if some code remains
+
+	boolean lexCode( int start, int end, boolean include ) {
+
+		boolean hasCode = false;
+		boolean continued = ( code[end - 1] == '\\' ); // before it is blanked
+		int chpos = start;
+
+		while( chpos < end ) {
+
+			char ch = code[chpos];
+
+			switch( state ) {
+
+				case CODE:
+
+					if( ch == '/' && chpos + 1 < end && code[chpos + 1] == '*' ) {
+						code[chpos++] = ' ';
+						code[chpos++] = ' ';
+						state = State.BLOCK_COMMENT;
+						continue;
+					}
+					if( ch == '/' && chpos + 1 < end && code[chpos + 1] == '/' ) {
+						state = State.LINE_COMMENT;
+						continue;
+					}
+					if( ch == '"' && include == false ) {
+						state = State.STRING;
+					}
+					else if( ch == '\'' ) {
+						state = State.CHAR;
+					}
+					if( isBlank( ch ) == false ) {
+						hasCode = true;
+					}
+					chpos++;
+					break;
+
+				case BLOCK_COMMENT:
+
+					if( ch == '*' && chpos + 1 < end && code[chpos + 1] == '/' ) {
+						code[chpos++] = ' ';
+						state = State.CODE;
+					}
+					code[chpos++] = ' ';
+					break;
+
+				case LINE_COMMENT:
+
+					code[chpos++] = ' ';
+					break;
+
+				case STRING:
+				case CHAR:
+
+					if( ch == '\\' && chpos + 1 < end ) {
+						code[chpos++] = ' '; // escaped char
+						code[chpos++] = ' ';
+						continue;
+					}
+					if( ( ch == '"' && state == State.STRING ) || ( ch == '\'' && state == State.CHAR ) ) {
+						state = State.CODE; // closing quote kept
+						hasCode = true;
+						chpos++;
+						continue;
+					}
+					code[chpos++] = ' ';
+					break;
+			}
+		}
+
+		// only a block comment goes on to the next line, a literal or a line comment when the line is continued
+
+		if( state != State.BLOCK_COMMENT && continued == false ) {
+			state = State.CODE;
+		}
+
+		return hasCode;
+	}
+
+	void blankComments( int start, int end ) {
+
+		// into a dead group or on a directive line : only the comments have to be followed, their chars are blanked later on
+
+		int chpos = start;
+
+		while( chpos < end ) {
+
+			if( state == State.BLOCK_COMMENT ) {
+				if( code[chpos] == '*' && chpos + 1 < end && code[chpos + 1] == '/' ) {
+					state = State.CODE;
+					chpos++;
+				}
+			}
+			else if( code[chpos] == '/' && chpos + 1 < end && code[chpos + 1] == '*' ) {
+				state = State.BLOCK_COMMENT;
+				chpos++;
+			}
+			else if( code[chpos] == '/' && chpos + 1 < end && code[chpos + 1] == '/' ) {
+				break;
+			}
+			chpos++;
+		}
+	}
+
+	void blank( int start, int end ) {
+		Arrays.fill( code, start, end, ' ' );
+	}
+
+	int skipBlanks( int start, int end ) {
+
+		int chpos = start;
+		while( chpos < end && isBlank( code[chpos] ) ) {
+			chpos++;
+		}
+		return chpos;
+	}
+
+	static boolean isBlank( char ch ) {
+		return ch == ' ' || ch == '\t' || ch == '\f' || ch == '\u000b';
+	}
+}
@@ -0,0 +1,126 @@
+package pri;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// caller -> callee edges between the declared functions (symbol ids), collected by the use census and stored compressed :
+// the callees of a caller are callees[calleeStarts[caller],calleeStarts[caller + 1]), sorted and without duplicates
+// the functions reachable from the roots are found by a breadth first walk, marked into a bitset
+
+public class CallGraph {
+
+	// edges and roots collected by a census worker (or for a single file in incremental mode), before the graph is built
+
+	public static class Edges {
+
+		int[] callers = new int[64];
+		int[] callees = new int[64];
+		int count = 0;
+
+		public BitSet roots = new BitSet(); // functions used out of the body of any declared function (main, function pointer tables ...)
+
+		public void add( int caller, int callee ) {
+
+			if( count == callers.length ) {
+				callers = Arrays.copyOf( callers, count * 2 );
+				callees = Arrays.copyOf( callees, count * 2 );
+			}
+			callers[count] = caller;
+			callees[count] = callee;
+			count++;
+		}
+	}
+
+	public int[] calleeStarts;
+	public int[] callees;
+	public BitSet roots = new BitSet();
+
+	public CallGraph( int functionCount, List<Edges> edgesOfWorkers ) {
+
+		// counting sort of the edges by caller
+
+		calleeStarts = new int[functionCount + 1];
+
+		for( Edges edges : edgesOfWorkers ) {
+			for( int edge = 0 ; edge < edges.count ; edge++ ) {
+				calleeStarts[edges.callers[edge] + 1]++;
+			}
+			roots.or( edges.roots );
+		}
+
+		for( int caller = 0 ; caller < functionCount ; caller++ ) {
+			calleeStarts[caller + 1] += calleeStarts[caller];
+		}
+
+		int[] fills = Arrays.copyOf( calleeStarts, functionCount );
+		callees = new int[calleeStarts[functionCount]];
+
+		for( Edges edges : edgesOfWorkers ) {
+			for( int edge = 0 ; edge < edges.count ; edge++ ) {
+				callees[fills[edges.callers[edge]]++] = edges.callees[edge];
+			}
+		}
+
+		// the same call found on several lines (or by several workers) is kept once
+
+		int edgeCount = 0;
+
+		for( int caller = 0 ; caller < functionCount ; caller++ ) {
+
+			int start = calleeStarts[caller];
+			int end = calleeStarts[caller + 1];
+			calleeStarts[caller] = edgeCount;
+
+			Arrays.sort( callees, start, end );
+
+			for( int edge = start ; edge < end ; edge++ ) {
+				if( edge == start || callees[edge] != callees[edge - 1] ) {
+					callees[edgeCount++] = callees[edge];
+				}
+			}
+		}
+
+		calleeStarts[functionCount] = edgeCount;
+		callees = Arrays.copyOf( callees, edgeCount );
+	}
+
+	public int functionCount() {
+		return calleeStarts.length - 1;
+	}
+
+	public int edgeCount() {
+		return callees.length;
+	}
+
+	// the functions reachable from the given roots (roots included)
+
+	public BitSet reachable( BitSet from ) {
+
+		BitSet reached = new BitSet( functionCount() );
+		int[] queue = new int[functionCount()];
+		int head = 0;
+		int tail = 0;
+
+		for( int root = from.nextSetBit( 0 ) ; root >= 0 ; root = from.nextSetBit( root + 1 ) ) {
+			reached.set( root );
+			queue[tail++] = root;
+		}
+
+		while( head < tail ) {
+
+			int caller = queue[head++];
+
+			for( int edge = calleeStarts[caller] ; edge < calleeStarts[caller + 1] ; edge++ ) {
+
+				int callee = callees[edge];
+				if( reached.get( callee ) == false ) {
+					reached.set( callee );
+					queue[tail++] = callee;
+				}
+			}
+		}
+
+		return reached;
+	}
+}
@@ -1,120 +1,284 @@
 package pri;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.io.FilenameUtils;
 
-import pri.FileParser.UseOfFunction;
-import pri.FolderWalker.FileItem;
+import pri.FileTable.FileItem;
+import pri.Reporter.Level;
 
 public class CodeCheck {
 
-	static FolderWalker.WalkResult compilingSourcesPath( String srcFolder, BufferedWriter writer ) {
+	// list the sub folders in parallel when walking the trees
+	static boolean parallelWalk = true;
+
+	// run the census passes over all the available cores (outputs stay in the files order)
+	static boolean parallelCensus = true;
+
+	// read the sources once, the use census works on the code kept in memory by the declaration census
+	static boolean singlePassCensus = true;
+
+	// a use of a function is a whole C identifier equal to its name (false : any occurrence of the name, getValue is a use of get)
+	static boolean wholeIdentifierUse = true;
+
+	// report the functions called only from unreferenced ones too, as found unreachable from the roots over the call graph
+	// (false : the functions having no use only)
+	static boolean reachability = true;
+
+	// roots of the reachability besides the forgiven functions (see isUnrefForgiven) and the uses out of any declared function body
+	// (the bodies of main and wmain, not taken as declarations, are such ones)
+	static Set<String> rootFunctions = Set.of( "main", "wmain", "WinMain", "wWinMain", "DllMain" );
+
+	// after the checks, keep the function index in memory and update it on each change of the sources (until stopped)
+	// set by a "watch" among the checks to run
+	static boolean watchSources = false;
+
+	// per file results kept from one run to the other, only the modified sources are parsed again (null : no cache)
+	static String cacheFile = null;
+
+	// binary result of the functions check written at the end of the run, mapped back by the tools reading it (see ResultSnapshot, null : none)
+	static String snapshotFile = null;
+
+	// most detailed output written to the console (DETAIL : every declaration, PROGRESS : files being processed, RESULT : findings only)
+	static Reporter.Level consoleLevel = Reporter.Level.DETAIL;
+
+	// per phase measures (time, throughput, memory) summarized into the log, and as JFR events when a recording runs
+	static Instrumentation instrumentation = new Instrumentation();
+
+	static FolderWalker.TreeContent walkingTree( String baseFolder, Reporter reporter ) {
+		
+		// a single walk gives the sources and the projects files to all the checks
+		
+		Instrumentation.Phase phase = instrumentation.begin( "walk" );
 		
 		FolderWalker fw = new FolderWalker();
-		FolderWalker.WalkResult fwr = fw.new WalkResult();
-		fwr.backref = fw;
-		fw.listSource( srcFolder, fwr );
+		fw.parallel = parallelWalk;
+		fw.reporter = reporter;
+		FolderWalker.TreeContent content = fw.new TreeContent();
+		content.backref = fw;
+		fw.listAll( baseFolder, content );
 		
-		// epurate results 
+		phase.files = fw.table.size();
+		instrumentation.end( phase );
+		
+		return content;
+	}
+	
+	static FolderWalker.WalkResult compilingSourcesPath( FolderWalker.TreeContent content, Reporter reporter ) {
 		
-		List<FolderWalker.FileItem> fileItemsFiltered = new ArrayList<>();
+		Instrumentation.Phase phase = instrumentation.begin( "compiling sources path" );
+		
+		FolderWalker.WalkResult fwr = content.backref.new WalkResult();
+		fwr.backref = content.backref;
+		fwr.files = withoutProCGenerated( content.sources, reporter );
 
-		for( FolderWalker.FileItem fileItem1 : fwr.files ) {
+		phase.files = fwr.files.size();
+		instrumentation.end( phase );
+		
+		return fwr;
+	}
+	
+	// the skipped files are written to the reporter (null : quiet, as for the updates of the watch mode)
+	
+	static List<FileTable.FileItem> withoutProCGenerated( List<FileTable.FileItem> sources, Reporter reporter ) {
+		
+		// epurate results 
+		
+		// if, into the same folder
+		// a file <name>.pc exist along with a <name>.cpp or <name>.c file then skip the .c or .cpp record (which is a PRO*C generated file)
+		
+		// folder + basename of all the .pc files
+		Set<String> pcFiles = new HashSet<String>();
+		
+		for( FileTable.FileItem fileItem : sources ) {
+			if( fileItem.ext().equals("pc") ) {
+				pcFiles.add( fileItem.folder() + File.separator + fileItem.basename() );
+			}
+		}
+		
+		List<FileTable.FileItem> fileItemsFiltered = new ArrayList<>();
 
-			File file1 = new File( fileItem1.fullpath );
-			String ext1 = FilenameUtils.getExtension(file1.getName());
-			String basename1 = FilenameUtils.getBaseName(file1.getName());
-			String path1 = FilenameUtils.getPath(file1.getPath());	
-			
-			boolean skip = false;
-			
-			for( FolderWalker.FileItem fileItem2 : fwr.files ) {
+		for( FileTable.FileItem fileItem : sources ) {
 
-				File file2 = new File( fileItem2.fullpath );
-				String ext2 = FilenameUtils.getExtension(file2.getName());
-				String basename2 = FilenameUtils.getBaseName(file2.getName());
-				String path2 = FilenameUtils.getPath(file2.getPath());
-				
-				// if, into the same folder
-				// a file <name>.pc exist along with a <name>.cpp or <name>.c file then skip the .c or .cpp record (which is a PRO*C generated file)
-				
-				if( basename1.equals(basename2) && path1.equals( path2 ) && ext1.equals("pc") == false && ext2.equals("pc") ) {
-					skip = true;
-					break;
-				}				
-			}
+			boolean skip = fileItem.ext().equals("pc") == false && pcFiles.contains( fileItem.folder() + File.separator + fileItem.basename() );
 			
 			if( skip == false ) {
-				fileItemsFiltered.add( fileItem1 );
-			} else {				
-				System.out.format("remove PRO*C generated %s%s.%s\n", path1, basename1, ext1 );				
+				fileItemsFiltered.add( fileItem );
+			} else if( reporter != null ) {				
+				reporter.console( Level.PROGRESS, "remove PRO*C generated %s%s.%s\n", FilenameUtils.getPath( fileItem.fullpath ), fileItem.basename(), fileItem.ext() );				
 			}
 		}
 
-		fwr.files = fileItemsFiltered;
-
-		return fwr;
+		return fileItemsFiltered;
 	}
 	
-	static FolderWalker.WalkResult compilingProjectPath( String baseFolder, BufferedWriter writer ) {
+	static FolderWalker.WalkResult compilingProjectPath( FolderWalker.TreeContent content, Reporter reporter ) {
 		
-		FolderWalker fw = new FolderWalker();
-		FolderWalker.WalkResult fwr = fw.new WalkResult();
-		fwr.backref = fw;
-				
-		fw.listProject( baseFolder + "/msvc10" , fwr );
-		fw.listProject( baseFolder + "/gmake3" , fwr );		
+		FolderWalker.WalkResult fwr = content.backref.new WalkResult();
+		fwr.backref = content.backref;
+		
+		// vcxproj and makefiles of msvc10 and gmake3
+		fwr.files.addAll( content.vcxprojs );
+		fwr.files.addAll( content.gmake3Vcxprojs );
+		fwr.files.addAll( content.makefiles );
 
 		return fwr;
 	}	
 		
 	// ------- find unreferenced function ------------
 		
-	static boolean isUnrefForgiven( UseOfFunction uof ) {
+	static boolean isUnrefForgiven( String functionName, String functionType ) {
 		
 		// tell if this function name is forgiven to be unreferenced
 				
-		if( uof.functionName.equals( "ConnectXR_compact" ))    { return true; }  // used from a DLL
-		if( uof.functionName.equals( "daDonneArchT_compact" )) { return true; }  // used from a DLL
-		if( uof.functionName.equals( "daDonneJourT_compact" )) { return true; }  // used from a DLL
-		if( uof.functionName.equals( "GetLastQualityCode"   )) { return true; }  // used into unscanned expreval code
-		if( uof.functionName.equals( "trt_erreur"           )) { return true; }  // used but where ???
+		if( functionName.equals( "ConnectXR_compact" ))    { return true; }  // used from a DLL
+		if( functionName.equals( "daDonneArchT_compact" )) { return true; }  // used from a DLL
+		if( functionName.equals( "daDonneJourT_compact" )) { return true; }  // used from a DLL
+		if( functionName.equals( "GetLastQualityCode"   )) { return true; }  // used into unscanned expreval code
+		if( functionName.equals( "trt_erreur"           )) { return true; }  // used but where ???
 				
-		if( uof.functionType.equals("WINAPI") )   { return true; }  // used from a DLL
-		if( uof.functionType.equals("DECLTYPE") ) { return true; }
+		if( functionType.equals("WINAPI") )   { return true; }  // used from a DLL
+		if( functionType.equals("DECLTYPE") ) { return true; }
 		
 		return false;
 	}	
 	
-	static void analysingSourcesContent( String srcFolder, FolderWalker.WalkResult fwr, BufferedWriter writer ) throws IOException {
-		
-		String log;
+	static FileParser newFileParser() {
 		
 		FileParser fp = new FileParser();
+		fp.parallel = parallelCensus;
+		fp.singlePass = singlePassCensus;
+		fp.instrumentation = instrumentation;
+		fp.wholeIdentifiers = wholeIdentifierUse;
+		fp.callGraph = reachability;
+		fp.incremental = watchSources;
+		return fp;
+	}
+	
+	// the functions reachable from the roots (all of them when not looked for)
+	
+	static BitSet reachableFunctions( FileParser.Result fpr, Reporter reporter ) {
+		
+		SymbolTable symbols = fpr.symbols;
+		BitSet reached = new BitSet();
+		
+		if( fpr.calls == null ) {
+			reached.set( 0, symbols.size() );
+			return reached;
+		}
+		
+		BitSet roots = (BitSet)fpr.calls.roots.clone();
+		
+		for( int symbolId = 0 ; symbolId < symbols.size() ; symbolId++ ) {
+			if( rootFunctions.contains( symbols.name( symbolId )) || isUnrefForgiven( symbols.name( symbolId ), symbols.type( symbolId )) ) {
+				roots.set( symbolId );
+			}
+		}
+		
+		reached = fpr.calls.reachable( roots );
+		reporter.log( Level.RESULT, " call graph : %d functions, %d edges, %d roots, %d reachable\n", symbols.size(), fpr.calls.edgeCount(), roots.cardinality(), reached.cardinality() );
+		
+		return reached;
+	}
+	
+	// the unreferenced functions (no use) and the unreachable ones (used only from unreachable functions), by path then line
+	
+	static List<Integer> unreferencedFunctions( FileParser.Result fpr, FileTable table, BitSet reached ) {
+		
+		SymbolTable symbols = fpr.symbols;
+		List<Integer> unrefs = new ArrayList<Integer>(); // symbol ids
+		
+		for( int symbolId = 0 ; symbolId < symbols.size() ; symbolId++ ) {
+			
+			if( symbols.useCounts[symbolId] == 0 ) {
+
+				if( isUnrefForgiven( symbols.name( symbolId ), symbols.type( symbolId )) ) {
+					continue;
+				}
+
+				unrefs.add( symbolId );
+			}
+			else if( reached.get( symbolId ) == false ) {
+				
+				// used, but only from unreachable functions (or by prototypes)
+				
+				unrefs.add( symbolId );
+			}
+		}
+		
+		// sort by name / line num
+		
+		// order span results using their spanType and the calibration span order type
+		unrefs.sort(
+			( Integer symbolId1, Integer symbolId2 ) -> {
+
+				int compareTo = table.get( symbols.fileIds[symbolId1] ).progPath().compareTo( table.get( symbols.fileIds[symbolId2] ).progPath() );
+				if( compareTo != 0 ) {
+					return compareTo;
+				}
+
+				if( symbols.lineNums[symbolId1] > symbols.lineNums[symbolId2] ) {
+					return 1;
+				}
+				
+				return -1;
+			}
+		);
+		
+		return unrefs;
+	}
+	
+	static String finding( FileParser.Result fpr, FileTable table, int symbolId ) {
+		
+		SymbolTable symbols = fpr.symbols;
+		String finding = ( symbols.useCounts[symbolId] == 0 ) ? "Unreferenced" : "Unreachable";
+		
+		return String.format( "%s function [%s@%s] declaration : %s(%d)", finding, symbols.type( symbolId ), symbols.name( symbolId ), table.get( symbols.fileIds[symbolId] ).fullpath, symbols.lineNums[symbolId] );
+	}
+	
+	static FileParser.Result analysingSourcesContent( String srcFolder, FolderWalker.WalkResult fwr, Reporter reporter ) throws IOException {
+		
+		FileParser fp = newFileParser();
 		FileParser.Result fpr = fp.new Result();
 		
-		fp.censusFunctionDeclaration( fwr.files, fpr, writer );
+		Instrumentation.Phase phase = instrumentation.begin( "declaration census" );
+		
+		if( cacheFile != null ) {
+			fp.cache = new AnalysisCache( fp, cacheFile );
+			fp.cache.load( reporter );
+		}
+		
+		fp.censusFunctionDeclaration( fwr.files, fpr, reporter );
+		
+		if( fp.cache != null ) {
+			fp.cache.save();
+			reporter.console( Level.PROGRESS, "analysis cache : %d sources reused, %d sources parsed\n", fp.cache.reusedCount.get(), fp.cache.parsedCount.get() );
+		}
+		
+		phase.files = fwr.files.size();
+		phase.lines = fpr.readLineCount;
+		phase.bytes = fpr.readByteCount;
+		instrumentation.end( phase );
 		
 		Integer cppFilesCount = 0;
 		Integer pcFilesCount = 0;
 		Integer totalfilesCount = 0;
 						
-		for( FolderWalker.FileItem fileItem : fwr.files ) {
+		for( FileTable.FileItem fileItem : fwr.files ) {
 			
         	// only some type
-        	if( fileItem.ext.equalsIgnoreCase("c") || fileItem.ext.equalsIgnoreCase("cpp")) {
+        	if( fileItem.kind().isCpp() ) {
         		cppFilesCount++;
         	}
-        	else if ( fileItem.ext.equalsIgnoreCase("pc") ) {            		
+        	else if ( fileItem.kind() == FileTable.Ext.PC ) {            		
         		pcFilesCount++;
         	}        	
         	totalfilesCount++;        	
@@ -123,186 +287,154 @@ public class CodeCheck {
 		// add some sources to do the census of use only
 		
 		// statis.h content use of function pointers
-    	FileItem fi = fwr.backref.new FileItem();
-    	fi.ext = "h"; 
-    	fi.name = "name";
-    	fi.folder = srcFolder + "\\C\\calculs";
-    	fi.fullpath = srcFolder + "\\C\\calculs\\statis.h";		
+    	FileItem fi = fwr.backref.table.add( srcFolder + "\\C\\calculs", "statis.h", srcFolder + "\\C\\calculs\\statis.h" );
 		fwr.files.add( fi );
-				
-		fp.censusFunctionUse( fwr.files, fpr, writer);
 		
-		Set<String> functionNames = fpr.useOfFunctions.keySet();
+		phase = instrumentation.begin( "use census" );
+		long readByteCount = fpr.readByteCount;
+		
+		fp.censusFunctionUse( fwr.files, fpr, reporter );
+		
+		phase.files = fwr.files.size();
+		phase.lines = fpr.scannedLineCount;
+		phase.bytes = fpr.readByteCount - readByteCount;
+		instrumentation.end( phase );
+		
+		SymbolTable symbols = fpr.symbols;
+		FileTable table = fwr.backref.table;
 		
-//		for( String functionName : functionNames ) {
+//		for( int symbolId = 0 ; symbolId < symbols.size() ; symbolId++ ) {
 //			
-//			UseOfFunction uof = fpr.useOfFunctions.get( functionName );
-//			System.out.format("function uses : %s {%d}\n", functionName, uof.useCount );
+//			System.out.format("function uses : %s {%d}\n", symbols.name( symbolId ), symbols.useCounts[symbolId] );
 //		}		
 				
+		phase = instrumentation.begin( "reachability" );
+		BitSet reached = reachableFunctions( fpr, reporter );
+		instrumentation.end( phase );
+		
+		phase = instrumentation.begin( "report sorting" );
+		List<Integer> unrefs = unreferencedFunctions( fpr, table, reached );
+		instrumentation.end( phase );
+		
 		int unrefFxCount = 0;
-		List<UseOfFunction> unrefs = new ArrayList<UseOfFunction>();
+		int unreachableFxCount = 0;
 		
-		for( String functionName : functionNames ) {
+		for( int symbolId : unrefs ) {
 			
-			UseOfFunction uof = fpr.useOfFunctions.get( functionName );
-			if( uof.useCount == 0 ) {
-
-				if( isUnrefForgiven( uof) ) {
-					continue;
-				}
-
-				unrefs.add(uof);
+			reporter.both( Level.RESULT, "%s\n", finding( fpr, table, symbolId ));
+			
+			if( symbols.useCounts[symbolId] == 0 ) {
 				unrefFxCount++;
 			}
-		}
-		
-		// sort by name / line num
-		
-		// order span results using their spanType and the calibration span order type
-		unrefs.sort(
-			( UseOfFunction uof1, UseOfFunction uof2 ) -> {
-
-				int compareTo = uof1.sourceProgBasedUrl.compareTo(uof2.sourceProgBasedUrl);
-				if( compareTo != 0 ) {
-					return compareTo;
-				}
-
-				if( uof1.sourceLineNum > uof2.sourceLineNum ) {
-					return 1;
-				}
-				
-				return -1;
+			else {
+				unreachableFxCount++;
 			}
-		);
+		}
 		
-		for( UseOfFunction uof : unrefs ) {
+		reporter.both( Level.RESULT, " ====================================================\n" );		
+		reporter.both( Level.RESULT, " total sources line count          : %d\n", fpr.sourceLineCount );
+		reporter.both( Level.RESULT, "       PC sources line count       : %d\n", fpr.pcFilesSourceLineCount );
+		reporter.both( Level.RESULT, "    C/CPP sources line count       : %d\n", fpr.cppFilesSourceLineCount );
+		reporter.both( Level.RESULT, " total C/CPP/PC sources file count : %d\n", fwr.files.size() );
+		reporter.both( Level.RESULT, "       PC sources count            : %d\n", pcFilesCount );
+		reporter.both( Level.RESULT, "    C/CPP sources count            : %d\n", cppFilesCount );		
+		reporter.both( Level.RESULT, " total function count              : %d\n", fpr.functionsCount );
+		reporter.both( Level.RESULT, " Unreferenced functions count      : %d\n", unrefFxCount );		
+		reporter.both( Level.RESULT, " Unreachable functions count       : %d\n", unreachableFxCount );
+		
+		if( snapshotFile != null ) {
 			
-			log = String.format("Unreferenced function [%s@%s] declaration : %s(%d)\n", uof.functionType, uof.functionName, uof.sourceName, uof.sourceLineNum ); System.out.print(log); writer.write(log);			
+			phase = instrumentation.begin( "snapshot" );
+			ResultSnapshot.write( snapshotFile, fpr, table, reached, unrefs );
+			phase.bytes = new File( snapshotFile ).length();
+			instrumentation.end( phase );
 		}
 		
-		log = String.format(" ====================================================\n" ); System.out.print(log); writer.write(log);		
-		log = String.format(" total sources line count          : %d\n", fpr.sourceLineCount ); System.out.print(log); writer.write(log);
-		log = String.format("       PC sources line count       : %d\n", fpr.pcFilesSourceLineCount ); System.out.print(log); writer.write(log);
-		log = String.format("    C/CPP sources line count       : %d\n", fpr.cppFilesSourceLineCount ); System.out.print(log); writer.write(log);
-		log = String.format(" total C/CPP/PC sources file count : %d\n", fwr.files.size() );	System.out.print(log); writer.write(log);
-		log = String.format("       PC sources count            : %d\n", pcFilesCount ); System.out.print(log); writer.write(log);
-		log = String.format("    C/CPP sources count            : %d\n", cppFilesCount ); System.out.print(log); writer.write(log);		
-		log = String.format(" total function count              : %d\n", fpr.functionsCount ); System.out.print(log); writer.write(log);
-		log = String.format(" Unreferenced functions count      : %d\n", unrefFxCount ); System.out.print(log); writer.write(log);		
+		return fpr;
 	}
 	
-	static void searchUnreferencedFunctions( String progFolder, BufferedWriter writer ) throws IOException {
+	static SourceWatcher searchUnreferencedFunctions( String progFolder, FolderWalker.TreeContent content, Reporter reporter ) throws IOException {
 
 		// make the list of the source to analyze
-		FolderWalker.WalkResult fwr = compilingSourcesPath( progFolder, writer );
+		FolderWalker.WalkResult fwr = compilingSourcesPath( content, reporter );
 		
 		// perform the analyze		
-		analysingSourcesContent( progFolder, fwr, writer );			
+		FileParser.Result fpr = analysingSourcesContent( progFolder, fwr, reporter );
+		
+		// the index kept hot for the watch mode (the sources of the use census only are the ones without declarations kept)
+		
+		if( watchSources == false ) {
+			return null;
+		}
+		
+		List<FileTable.FileItem> useOnly = new ArrayList<FileTable.FileItem>();
+		for( FileTable.FileItem fileItem : fwr.files ) {
+			if( fileItem.id >= fpr.declarationsOfFiles.length || fpr.declarationsOfFiles[fileItem.id] == null ) {
+				useOnly.add( fileItem );
+			}
+		}
+		
+		return new SourceWatcher( progFolder, fwr.backref.table, content.sources, useOnly, newFileParser(), fpr, reporter );
 	}
 	
 	// ------- find unreferenced VCXPROJ -------------
 	
-	static void searchUnreferencedMvsc10Project( String progFolder, BufferedWriter writer ) throws IOException {
+	static void searchUnreferencedMvsc10Project( String progFolder, FolderWalker.TreeContent content, Reporter reporter ) throws IOException {
 		
-		FolderWalker fw = new FolderWalker();
-		FolderWalker.WalkResult fwr = fw.new WalkResult();
-		fwr.backref = fw;
-				
-		fw.listVCXPROJ( progFolder + "/msvc10" , fwr );
+		// each solution of msvc10 is read once into the index
 		
-		System.out.format("--- begin ---\n" );		
+		if( content.solutions.isEmpty() ) {
+			reporter.console( Level.WARNING, "no solution file found under %s\n", progFolder + "/msvc10" );
+		}
 		
-		for( FolderWalker.FileItem vcxprojFileItem : fwr.files ) {
-			
-			String name = vcxprojFileItem.name;
-			boolean founded = false; 
-			
-			// System.out.format("census use of %s\n", name );
+		SolutionIndex solutionIndex = new SolutionIndex( content.solutions );
+		
+		reporter.console( Level.RESULT, "--- begin ---\n" );		
+		
+		// the vcxproj of msvc10 only, the ones of gmake3 are not into the solutions
+		for( FileTable.FileItem vcxprojFileItem : content.vcxprojs ) {
 			
-			try( BufferedReader reader = new BufferedReader( new FileReader( progFolder + "/msvc10/DMS.sln" )) )
-			{
-				while( true ) {
-
-					String line = reader.readLine();
-					if( line == null ) { break; }
-					
-					int chpos = line.indexOf( name );
-					if( chpos != -1 ) {
-						
-						// ok
-						founded = true;
-						continue;
-					}
-				}
-			}
+			boolean founded = solutionIndex.isReferenced( vcxprojFileItem ); 
 			
 			if( founded == false ) {
 				
-				System.out.format("unreferenced vcxproj %s\n", vcxprojFileItem.fullpath );
+				reporter.console( Level.RESULT, "unreferenced vcxproj %s\n", vcxprojFileItem.fullpath );
 				
 			}
 		}
 		
-		System.out.format("--- end ---\n" );
+		reporter.console( Level.RESULT, "--- end ---\n" );
 	}
 	
 	// ------- find unreferenced source file ------------
 		
-	static void searchUnreferencedSourceFile( String progFolder, BufferedWriter writer ) throws IOException {
+	static void searchUnreferencedSourceFile( String progFolder, FolderWalker.TreeContent content, Reporter reporter ) throws IOException {
 		
 		// make the list of the source to analyze
-		FolderWalker.WalkResult fwr = compilingSourcesPath( progFolder, writer );
+		FolderWalker.WalkResult fwr = compilingSourcesPath( content, reporter );
 		
 		// make the list of the project
-		FolderWalker.WalkResult fwrp = compilingProjectPath( progFolder, writer );		
+		FolderWalker.WalkResult fwrp = compilingProjectPath( content, reporter );		
 		
-		// for each source file try to find a reference into at least one project file (makefile or vcxproj)
+		// each project file (makefile or vcxproj) is read once into the index
 		
-		System.out.format("--- begin ---\n" );
+		ProjectIndex projectIndex = new ProjectIndex( fwrp.files );
 		
-		for( FolderWalker.FileItem srcFileItem : fwr.files ) {
-
-			boolean founded = false; 					
-			
-			//System.out.format("census use of %s (%s)\n", srcFileItem.name, srcFileItem.basename );
-			
-			for( FolderWalker.FileItem projFileItem : fwrp.files ) {
-				
-				// for each project file
-				
-				String pattern = srcFileItem.name;
-				
-				if( projFileItem.name.equals( "makefile")) {
-					pattern = srcFileItem.basename + ".o";	
-				}
-				
-				try( BufferedReader reader = new BufferedReader( new FileReader( projFileItem.fullpath )) )
-				{
-					while( true ) {
+		// for each source file try to find a reference into at least one project file
+		
+		reporter.console( Level.RESULT, "--- begin ---\n" );
+		
+		for( FileTable.FileItem srcFileItem : fwr.files ) {
 
-						String line = reader.readLine();
-						if( line == null ) { break; }
-						
-						int chpos = line.indexOf( pattern );
-						if( chpos != -1 ) {
-							
-							// ok
-							founded = true;
-							//System.out.format("founded into %s\n", projFileItem.fullpath );
-							break;
-						}
-					}
-				}
-			}
+			boolean founded = projectIndex.isReferenced( srcFileItem ); 					
 			
 			if( founded == false ) {
 				
-				System.out.format("**** unfounded source %s\n", srcFileItem.fullpath );				
+				reporter.console( Level.RESULT, "**** unfounded source %s\n", srcFileItem.fullpath );				
 			}
 		}
 		
-		System.out.format("--- end ---\n" );
+		reporter.console( Level.RESULT, "--- end ---\n" );
 	}
 	
 	// -----------------------------
@@ -316,22 +448,58 @@ public class CodeCheck {
 		//String root= "D:\\GIT\\SRV-Oracle19";
 		//String progFolder = root + "\\prog";
 		
-		String root= "D:\\GIT\\SAM66_DEV";
+		// arguments (optional) : root of the tree (e.g. the prog folder written by CorpusGenerator), checks to run among functions,vcxproj,sources
+		// (with watch : the functions check is then kept up to date on the changes of the sources, until stopped)
+		
+		String root= ( args.length > 0 ) ? args[0] : "D:\\GIT\\SAM66_DEV";
 		String progFolder = root;
+		String checks = ( args.length > 1 ) ? args[1] : "functions";
+		watchSources = checks.contains( "watch" );
 		
-		String logfile   = root + "\\codeCheck." + EpochTool.getNowEpoch() + ".log";
+		Long now         = EpochTool.getNowEpoch();
+		String logfile   = root + File.separator + "codeCheck." + now + ".log";
+		cacheFile        = root + File.separator + "codeCheck.cache";
+		snapshotFile     = root + File.separator + "codeCheck." + now + ".snapshot";
 
 		BufferedWriter writer = new BufferedWriter(new FileWriter(logfile));
-
-		// ------- find unreferenced function ------------
-		searchUnreferencedFunctions( progFolder, writer );
 		
-		// ------- find unreferenced VCXPROJ -------------
-		//searchUnreferencedMvsc10Project( progFolder, writer );		
-		
-		// ------- find unreferenced source file ---------
-		//searchUnreferencedSourceFile( progFolder, writer );		
+		// console and log file outputs are written asynchronously
+		Reporter reporter = new Reporter( System.out, writer );
+		reporter.consoleLevel = consoleLevel;
 
-		writer.close();
+		try {
+			// ------- single walk of the tree for all the checks ----
+			FolderWalker.TreeContent content = walkingTree( progFolder, reporter );
+			
+			// ------- find unreferenced function ------------
+			SourceWatcher watcher = null;
+			if( checks.contains( "functions" ) ) {
+				watcher = searchUnreferencedFunctions( progFolder, content, reporter );
+			}
+			
+			// ------- find unreferenced VCXPROJ -------------
+			if( checks.contains( "vcxproj" ) ) {
+				searchUnreferencedMvsc10Project( progFolder, content, reporter );
+			}
+			
+			// ------- find unreferenced source file ---------
+			if( checks.contains( "sources" ) ) {
+				searchUnreferencedSourceFile( progFolder, content, reporter );
+			}
+			
+			// ------- phases of all the checks run ---------
+			instrumentation.summarize( reporter );
+			
+			// ------- keep the unreferenced functions up to date ---------
+			if( watcher != null ) {
+				reporter.flush();
+				watcher.watch();
+			}
+		}
+		finally {
+			// what is still queued is written before leaving
+			reporter.flush();
+			writer.close();
+		}
 	}
 }
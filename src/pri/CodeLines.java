@@ -0,0 +1,97 @@
+package pri;
+
+import java.util.Arrays;
+
+// compact form of the code (not commented) lines of a source file, as consumed by the use census
+// only the runs of chars which can be part of a function name are kept, separated by a single space :
+// a function name is found into a line if and only if it is found into its compact form
+// the braces and the opening parenthesis are kept too, as tokens of their own (function bodies and calls for the call graph)
+
+public class CodeLines {
+
+	public char[] text = new char[256];
+	public int textLength = 0;
+
+	public int[] lineNums = new int[16]; // line number (from 1) of each kept line
+	public int[] lineEnds = new int[16]; // end of each kept line into text (the next one starts there)
+	public int count = 0; // number of kept lines
+
+	public int lineCount = 0; // total number of lines of the file
+
+	// tell if the char can't be part of a function name (as isolated by detectFunctionDeclaration)
+
+	static boolean isNameSeparator( char ch ) {
+
+		switch( ch ) {
+			case ' ': case '\t': case '*': case '&': case '(':
+			case '=': case '+': case '-': case ',': case ';':
+			case '{': case '}': case ':': case '<': case '>': case '[': case ']':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	static boolean isKeptSeparator( char ch ) {
+		return ch == '{' || ch == '}' || ch == '(';
+	}
+
+	// add the line source[start,end)
+
+	public void addLine( int lineNum, char[] source, int start, int end ) {
+
+		int length = 2 * ( end - start ); // a kept separator may take a space before it
+
+		if( textLength + length + 1 > text.length ) {
+			text = Arrays.copyOf( text, Math.max( text.length * 2, textLength + length + 1 ));
+		}
+
+		if( count == lineNums.length ) {
+			lineNums = Arrays.copyOf( lineNums, count * 2 );
+			lineEnds = Arrays.copyOf( lineEnds, count * 2 );
+		}
+
+		int lineStart = textLength;
+		boolean inToken = false;
+
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+
+			char ch = source[chpos];
+
+			if( isNameSeparator( ch ) ) {
+
+				if( isKeptSeparator( ch ) ) {
+					if( textLength > lineStart ) {
+						text[textLength++] = ' ';
+					}
+					text[textLength++] = ch;
+				}
+				inToken = false;
+				continue;
+			}
+
+			if( inToken == false && textLength > lineStart ) {
+				text[textLength++] = ' ';
+			}
+			text[textLength++] = ch;
+			inToken = true;
+		}
+
+		lineNums[count] = lineNum;
+		lineEnds[count] = textLength;
+		count++;
+	}
+
+	public int lineStart( int index ) {
+		return ( index == 0 ) ? 0 : lineEnds[index - 1];
+	}
+
+	// release the unused capacity once the file is complete
+
+	public void trim() {
+
+		text = Arrays.copyOf( text, textLength );
+		lineNums = Arrays.copyOf( lineNums, count );
+		lineEnds = Arrays.copyOf( lineEnds, count );
+	}
+}
@@ -1,32 +1,64 @@
 package pri;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.io.FilenameUtils;
+import pri.Reporter.Level;
 
 public class FileParser {
 
-	public class UseOfFunction {
+	public class Declaration {
 		
-		int useCount = 0;
 		String functionName;
 		String functionType;
+		boolean isStatic; // a static word before the name : file local linkage
+		int lineNum;
+		int parsingId; // relative to the file
+	}
+	
+	public class FileDeclarations {
+		
+		// declarations found into a single file, in line order
+		
+		public List<Declaration> declarations = new ArrayList<Declaration>();
+		public int parsingCount = 0; // number of evaluated line pairs
+		public List<String> includes = new ArrayList<String>(); // names (without folder) of the #include files
+		
+		public int sourceLineCount = 0;
+		public int pcFilesSourceLineCount = 0;
+		public int cppFilesSourceLineCount = 0;
+		
+		public int readLineCount = 0; // lines and bytes of the file parsed (not kept by the cache : 0 when reused)
+		public long readByteCount = 0;
 		
-		// declaration location
-		String sourceName; // full path
-		String sourceProgBasedUrl;
-		int sourceLineNum;		
-		String sourceExt; // without .
+		public CodeLines code = null; // kept for the use census in single pass mode
 	}
 	
+	public boolean parallel = false; // run the census over several threads
+	public int parallelism = Runtime.getRuntime().availableProcessors();
+	public AnalysisCache cache = null; // reuse the results of the unchanged files from a previous run
+	public boolean singlePass = false; // read the files once, the use census works on the code kept by the declaration census
+	public Charset sourceCharset = StandardCharsets.ISO_8859_1; // charset of the sources (single byte fast path for Latin-1)
+	public Instrumentation instrumentation = null; // per file timings and allocation of the workers (null : not measured)
+	public boolean wholeIdentifiers = true; // a use is a C identifier equal to the name (false : any occurrence of the name)
+	public boolean callGraph = false; // the use census collects the caller -> callee edges between the functions (Result.calls)
+	public boolean incremental = false; // keep per file what the census found, to update the result file by file (see updateFile)
+	public boolean quiet = false; // no output per file nor per declaration (the updates of the watch mode), warnings still written
+	
 	public class Result {
 				
 		public int sourceLineCount = 0; // all type of files		
@@ -35,156 +67,297 @@ public class FileParser {
 				
 		public int functionsCount = 0;
 		
-		public Map<String,UseOfFunction> useOfFunctions = new HashMap<String,UseOfFunction>();
-	}			
-
-	boolean isCommented( String line ) {
-
-		Character chPrevious = null;
+		public long readLineCount = 0;    // lines and bytes read from the files by the census passes
+		public long readByteCount = 0;
+		public long scannedLineCount = 0; // lines scanned by the use census
+		
+		public SymbolTable symbols = new SymbolTable(); // declared functions, with their use count
+		
+		public CodeLines[] codeOfFiles = new CodeLines[0]; // by file id (single pass mode)
+		public String[][] includesOfFiles = new String[0][]; // by file id, the FileDeclarations.includes
+		public int[][] definitionsOfFiles = new int[0][]; // by file id, pairs (declaration line, symbol id) of the functions declared by the file
+		public int[] lineCountsOfFiles = new int[0];       // by file id, lines of the files of the use census
+		public int[] sourceLineCountsOfFiles = new int[0]; // by file id, their code lines (neither comment nor dead)
+		
+		public CallGraph calls = null; // built by the use census when callGraph is set
 		
-		for( int chpos = 0 ; chpos < line.length() ; chpos++ ) {
+		public FileDeclarations[] declarationsOfFiles = new FileDeclarations[0]; // by file id, when incremental (null : file of the use census only)
+		public FileUses[] usesOfFiles = new FileUses[0]; // by file id, when incremental
+		FunctionMatcher matcher = null; // of the use census, when incremental
+		int[][] visibleStatics = null;
+	}
+	
+	public class FileUses {
+		
+		// uses counted from a single file, by symbol : subtracted from the counts when the file changes (incremental mode)
+		
+		int[] symbolIds = new int[16]; // the symbols hit by the scan (duplicates included) until collect
+		int[] counts = new int[0];
+		int count = 0;
+		CallGraph.Edges edges = null; // edges from the functions of the file, null when no call graph
+		
+		void hit( int symbolId ) {
 			
-			char ch = line.charAt( chpos );
-
-			if( ch == '*' ) {
-				
-				// considering it's 
-				/*
-				 * commented
-				 */
-				return true;
-			}			
+			if( count == symbolIds.length ) {
+				symbolIds = Arrays.copyOf( symbolIds, count * 2 );
+			}
+			symbolIds[count++] = symbolId;
+		}
+		
+		// take the counts of the hit symbols from the scratch of the file (left zeroed), add them to the totals
+		
+		void collect( int[] fileCounts, int[] totals ) {
 			
-			if( ch == '/' || ch == ' ' || ch == '\t' ) {
-				
-				// could be ...
+			counts = new int[count];
+			int kept = 0;
+			
+			for( int index = 0 ; index < count ; index++ ) {
 				
-				if( chPrevious != null && chPrevious == '/' && ch == '/' ) {
-					
-					// sure it is
-					return true;
+				int symbolId = symbolIds[index];
+				if( fileCounts[symbolId] != 0 ) {
+					symbolIds[kept] = symbolId;
+					counts[kept++] = fileCounts[symbolId];
+					totals[symbolId] += fileCounts[symbolId];
+					fileCounts[symbolId] = 0;
 				}
-				
 			}
-			else {
-				
-				// can't
+			
+			symbolIds = Arrays.copyOf( symbolIds, kept );
+			counts = Arrays.copyOf( counts, kept );
+			count = kept;
+		}
+		
+		void subtractFrom( int[] totals ) {
+			
+			for( int index = 0 ; index < count ; index++ ) {
+				totals[symbolIds[index]] -= counts[index];
+			}
+		}
+	}			
+
+	// function declaration census
+	
+	public class DeclarationBounds {
+		
+		// declaration found by detectFunctionDeclaration, as offsets into the current line text
+		
+		int typeStart;
+		int typeEnd;
+		int nameStart;
+		int nameEnd;
+	}
+	
+	static int indexOf( char[] text, int start, int end, char ch ) {
+		
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+			if( text[chpos] == ch ) {
+				return chpos;
+			}
+		}
+		return -1;
+	}
+	
+	static boolean regionEquals( char[] text, int start, int end, String value ) {
+		
+		if( end - start != value.length() ) {
+			return false;
+		}
+		
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+			if( text[chpos] != value.charAt( chpos - start ) ) {
 				return false;
 			}
-			
-			chPrevious = ch;
 		}
+		return true;
+	}
+	
+	static boolean regionContains( char[] text, int start, int end, String value ) {
 		
+		for( int chpos = start ; chpos <= end - value.length() ; chpos++ ) {
+			if( regionEquals( text, chpos, chpos + value.length(), value ) ) {
+				return true;
+			}
+		}
 		return false;
 	}
 	
-	// function declaration census
+	// tell if the word is into text[start,end) as a whole C identifier
+	
+	static boolean regionContainsWord( char[] text, int start, int end, String word ) {
+		
+		for( int chpos = start ; chpos <= end - word.length() ; chpos++ ) {
+			
+			if( regionEquals( text, chpos, chpos + word.length(), word ) 
+				&& ( chpos == start || FunctionMatcher.isIdentifierPart( text[chpos - 1] ) == false )
+				&& ( chpos + word.length() == end || FunctionMatcher.isIdentifierPart( text[chpos + word.length()] ) == false ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// name (without its folder) of the file included by the line code[start,end) or null : #include "name" or #include <name>
+	
+	static String includedName( char[] code, int start, int end ) {
+		
+		int chpos = start;
+		while( chpos < end && CLexer.isBlank( code[chpos] ) ) { chpos++; }
+		
+		if( chpos == end || code[chpos] != '#' ) {
+			return null;
+		}
+		
+		chpos++;
+		while( chpos < end && CLexer.isBlank( code[chpos] ) ) { chpos++; }
+		
+		if( regionEquals( code, chpos, Math.min( end, chpos + 7 ), "include" ) == false ) {
+			return null;
+		}
+		
+		int open = indexOf( code, chpos + 7, end, '"' );
+		char closing = '"';
+		if( open == -1 ) {
+			open = indexOf( code, chpos + 7, end, '<' );
+			closing = '>';
+		}
+		if( open == -1 ) {
+			return null;
+		}
+		
+		int close = indexOf( code, open + 1, end, closing );
+		if( close == -1 ) {
+			return null;
+		}
+		
+		int nameStart = open + 1;
+		for( int pos = open + 1 ; pos < close ; pos++ ) {
+			if( code[pos] == '/' || code[pos] == '\\' ) {
+				nameStart = pos + 1;
+			}
+		}
+		
+		return ( nameStart < close ) ? new String( code, nameStart, close - nameStart ) : null;
+	}
+	
+	// position of the first ch into current + next (as if concatenated) or -1
 	
-	void detectFunctionDeclaration( int parsingId, String current, String next, StringBuilder function, StringBuilder type ) {
+	static int indexOf( char[] current, int curStart, int curEnd, char[] next, int nextStart, int nextEnd, char ch ) {
+		
+		int chpos = indexOf( current, curStart, curEnd, ch );
+		if( chpos != -1 ) {
+			return chpos - curStart;
+		}
+		
+		chpos = indexOf( next, nextStart, nextEnd, ch );
+		if( chpos != -1 ) {
+			return ( curEnd - curStart ) + ( chpos - nextStart );
+		}
+		
+		return -1;
+	}
+	
+	// the lines are given as text ranges, nothing is allocated : the caller builds the strings when a declaration is found
+	
+	boolean detectFunctionDeclaration( int parsingId, char[] current, int curStart, int curEnd, char[] next, int nextStart, int nextEnd, DeclarationBounds bounds ) {
 
 //		if( parsingId == 468518 ) { 
 //			System.out.println( "parsingId=" + parsingId );			
 //		}
 		
-		// we evaluate the mainly the string current + optionally the next part
+		// we evaluate the mainly the string current + optionally the next part (comments and literals already blanked)
 		
-		if( isCommented( current ) ) { return; }
-
 		// detection of presence of a ()		
 		
-		int pos1 = current.indexOf('(');
+		int pos1 = indexOf( current, curStart, curEnd, '(' );
 		if( pos1 == -1 ) { 
-			return;
+			return false;
 		}
+		pos1 -= curStart;
 		
 		if( pos1 < 3 ) {
-			return; // require a minimum prototype T f();
-		}
-
-		String line = null;
-		
-		if( isCommented( next ) == false )  {
-			line = current + next;
-		}
-		else {
-			line = current;
+			return false; // require a minimum prototype T f();
 		}
 
-		int pos2 = line.indexOf(')');
+		int pos2 = indexOf( current, curStart, curEnd, next, nextStart, nextEnd, ')' );
 		if( pos2 == -1 ) { 
-			return;
+			return false;
 		}
 		
 		if( (pos2 > pos1) == false ) {
-			return;
+			return false;
 		}
 		
 		// detection presence of a following implementation
 		
-		int pos3 = line.indexOf('{');
+		int pos3 = indexOf( current, curStart, curEnd, next, nextStart, nextEnd, '{' );
 		if( pos3 == -1 ) { 
-			return;
+			return false;
 		}
 		
 		if( (pos3 > pos2) == false ) {
-			return;
+			return false;
 		}			
 					
-		String leftPart = line.substring( 0, pos1 ); // extract > xxx type functionName  <
+		// the left part > xxx type functionName < is current[curStart,curStart+pos1)
 				
-		// isolate the function name from the left part
+		// isolate the function name from the left part (walking backward)
 		
-		String functionLetters = "";
+		int nameLength = 0;
+		int nameEnd = 0;
 		int savePos = 0;
 		
-		for( int chpos = (leftPart.length() - 1) ; chpos >= 0 ; chpos-- ) {
+		for( int chpos = (pos1 - 1) ; chpos >= 0 ; chpos-- ) {
 			
-			char ch = leftPart.charAt( chpos );
+			char ch = current[curStart + chpos];
 			
-			if(( ch == '=' || ch == '+' || ch == '-'  || ch == ',' || ch == ';' || ch == '{' || ch == '}' || ch == ':'  || ch == '<'  || ch == '>' || ch == '['  || ch == ']' ) ) { return; }
-			if(( ch == '*' || ch == '&' ) && ( functionLetters.length() == 0 ) ) { return; }
+			if(( ch == '=' || ch == '+' || ch == '-'  || ch == ',' || ch == ';' || ch == '{' || ch == '}' || ch == ':'  || ch == '<'  || ch == '>' || ch == '['  || ch == ']' ) ) { return false; }
+			if(( ch == '*' || ch == '&' ) && ( nameLength == 0 ) ) { return false; }
 			
-			if(( ch == ' ' || ch == '\t' ) && ( functionLetters.length() == 0 )) { continue;}
+			if(( ch == ' ' || ch == '\t' ) && ( nameLength == 0 )) { continue;}
 			
-			if(( ch == ' ' || ch == '\t' || ch == '*' || ch == '&' ) && ( functionLetters.length() > 0 )) {				
+			if(( ch == ' ' || ch == '\t' || ch == '*' || ch == '&' ) && ( nameLength > 0 )) {				
 				savePos = chpos; // end of function name
 				break;
 			}
 			
-			functionLetters += ch; // concat the function name
+			if( nameLength == 0 ) {
+				nameEnd = curStart + chpos + 1;
+			}
+			nameLength++; // the function name grows to the left
 		}
 		
-		if( functionLetters.length() == 0 ) {
-			return;
+		if( nameLength == 0 ) {
+			return false;
 		}
 		
-		String functionName = new StringBuilder(functionLetters).reverse().toString();
+		int nameStart = nameEnd - nameLength;
 		
-		if( functionName.equals("-"      )) { return; }
-		if( functionName.equals(":"      )) { return; }		
-		if( functionName.equals("*"      )) { return; }
-		if( functionName.equals("="      )) { return; }
-		if( functionName.equals("if"     )) { return; }
-		if( functionName.equals("while"  )) { return; }
-		if( functionName.equals("for"    )) { return; }
-		if( functionName.equals("switch" )) { return; }
-		if( functionName.equals("strcmp" )) { return; }
-		if( functionName.equals("main"   )) { return; }
-		if( functionName.equals("wmain"  )) { return; }
+		if( regionEquals( current, nameStart, nameEnd, "-"      )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, ":"      )) { return false; }		
+		if( regionEquals( current, nameStart, nameEnd, "*"      )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "="      )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "if"     )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "while"  )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "for"    )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "switch" )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "strcmp" )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "main"   )) { return false; }
+		if( regionEquals( current, nameStart, nameEnd, "wmain"  )) { return false; }
 				
-		// isolate the type from the left part
+		// isolate the type from the left part (walking backward)
 		
-		String typeLetters = "";
+		int typeLength = 0;
+		int typeEnd = 0;
 		
 		for( int chpos = savePos ; chpos >= 0 ; chpos-- ) {
 			
-			char ch = leftPart.charAt( chpos );
+			char ch = current[curStart + chpos];
 			
-			if(( ch == '=' || ch == '+' || ch == '-' )) { return; }
+			if(( ch == '=' || ch == '+' || ch == '-' )) { return false; }
 			
 			if( ch == ' ' || ch == '\t'  ) {
 				
-				if( typeLetters.length() > 0 ) {					
+				if( typeLength > 0 ) {					
 					break;
 				}
 				else {
@@ -192,179 +365,915 @@ public class FileParser {
 				}
 			}
 			
-			typeLetters += ch;
+			if( typeLength == 0 ) {
+				typeEnd = curStart + chpos + 1;
+			}
+			typeLength++;
 		}
 		
-		if( typeLetters.length() == 0 ) {
-			return;
+		if( typeLength == 0 ) {
+			return false;
 		}		
 		
-		String typeName     = new StringBuilder(typeLetters).reverse().toString();
-		
-		if( typeName.equals("*")) { return; }
-		if( typeName.equals("=")) { return; }		
-		if( typeName.contains("{")) { return; }
-		if( typeName.contains("}")) { return; }
-		if( typeName.contains("(")) { return; }
-		if( typeName.contains(")")) { return; }
-		if( typeName.contains("return")) { return; }
-		if( typeName.contains("define")) { return; }
-		if( typeName.contains("/*")) { return; }
-		if( typeName.contains("&&")) { return; }
-		if( typeName.contains("||")) { return; }
-		if( typeName.contains(">")) { return; }
-		if( typeName.contains("<")) { return; }
-		
-		type.append(typeName);
-		function.append(functionName);
-
-		System.out.print( "-functionName->" + typeName + "@" + functionName + "<-" + parsingId + "\n" );				
+		int typeStart = typeEnd - typeLength;
+		
+		if( regionEquals( current, typeStart, typeEnd, "*")) { return false; }
+		if( regionEquals( current, typeStart, typeEnd, "=")) { return false; }		
+		if( regionContains( current, typeStart, typeEnd, "{")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "}")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "(")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, ")")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "return")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "define")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "/*")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "&&")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "||")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, ">")) { return false; }
+		if( regionContains( current, typeStart, typeEnd, "<")) { return false; }
+		
+		bounds.typeStart = typeStart;
+		bounds.typeEnd = typeEnd;
+		bounds.nameStart = nameStart;
+		bounds.nameEnd = nameEnd;
+		return true;
 	}
 	
-	void censusFunctionDeclaration( List<FolderWalker.FileItem> fileItems, Result r, BufferedWriter writer ) throws IOException {
+	SourceReader newSourceReader() {
 		
-		int parsingId = 1;
+		SourceReader reader = new SourceReader( sourceCharset );
 		
-		for( FolderWalker.FileItem fileItem : fileItems ) {
+		if( incremental ) {
+			// a resident process never maps the sources : on Windows a mapping (released by the GC only) makes the next save of the file fail
+			reader.mapThreshold = Integer.MAX_VALUE;
+		}
+		return reader;
+	}
+	
+	FileDeclarations parseFunctionDeclaration( FileTable.FileItem fileItem, SourceReader reader ) throws IOException {
+		
+		// the file (already read by the reader) is parsed on its own, the shared result is only updated by mergeFunctionDeclaration
+		
+		FileDeclarations fd = new FileDeclarations();
+		
+		if( singlePass || cache != null || incremental ) {
+			fd.code = new CodeLines(); // the cache needs the code lines to replay the use census
+		}
+		
+		CLexer lexer = reader.lex(); // the lines are taken from the code, the non code blanked at the same offsets
+		char[] text = lexer.code;
+		DeclarationBounds bounds = new DeclarationBounds();
+		FileTable.Ext kind = fileItem.kind();
+		
+		fd.readLineCount = reader.lineCount;
+		fd.readByteCount = reader.bytes.remaining();
+		
+		for( int fileLineNum = 0 ; fileLineNum < reader.lineCount ; fileLineNum++ ) { // numero de ligne du fichier source (from 0)
 			
-			// for each source file
+			int lineStart = reader.lineStarts[fileLineNum];
+			int lineEnd = reader.lineEnds[fileLineNum];
 
-			try( BufferedReader reader = new BufferedReader( new FileReader( fileItem.fullpath )) )
-			{
-				String previous = null; // previous line
-				int fileLineNum = -1;
+			// detection comment (and dead code)
+			
+			if( lexer.dead[fileLineNum] == false )  {
+				fd.sourceLineCount++; 
 				
-				while( true ) {
-
-					String line = reader.readLine();
-					if( line == null ) { break; }
+				if( fd.code != null ) {
+					fd.code.addLine( fileLineNum + 1, text, lineStart, lineEnd );
+				}
+				
+				String includedName = includedName( text, lineStart, lineEnd );
+				if( includedName != null ) {
+					fd.includes.add( includedName );
+				}
+			}
 
-					// detection comment
+			if( fileLineNum > 0 ) {
+				
+				fd.parsingCount++;
+				
+				// detection is made on two concatened line, both are ranges of the reader text
+				
+				int previousStart = reader.lineStarts[fileLineNum - 1];
+				int previousEnd = reader.lineEnds[fileLineNum - 1];
+				
+				if( lexer.dead[fileLineNum - 1] == false && detectFunctionDeclaration( fd.parsingCount, text, previousStart, previousEnd, text, lineStart, lineEnd, bounds ) ) {
 					
-					if( isCommented( line ) == false )  {
-						r.sourceLineCount++; 
-						
-						File file = new File( fileItem.fullpath );
-			            String ext = FilenameUtils.getExtension(file.getName());
-
-		            	if( ext.equalsIgnoreCase("c") || ext.equalsIgnoreCase("cpp") ) {
-		            		r.cppFilesSourceLineCount++;
-		            	}
-		            	else if( ext.equalsIgnoreCase("pc") ) {
-		            		r.pcFilesSourceLineCount++;
-		            	}
-					}
-
-					fileLineNum++; // numero de ligne du fichier source
-
-					if( previous != null ) {
-						
-						parsingId++;
-						
-						StringBuilder functionNameSb = new StringBuilder();
-						StringBuilder functionTypeSb = new StringBuilder();
-						
-						detectFunctionDeclaration( parsingId, previous, line, functionNameSb, functionTypeSb ); // detection is made on two concatened line
-												
-						if( functionNameSb.length() > 0 ) {
-							
-							UseOfFunction uof = r.useOfFunctions.get( functionNameSb.toString() );
-							if( uof == null ) {
-								
-								// if not already done for this function_name
-								// create an object
-								
-								uof = new UseOfFunction();
-								uof.functionName = functionNameSb.toString();
-								uof.functionType = functionTypeSb.toString();
-								uof.sourceName = fileItem.fullpath;								
-								uof.sourceProgBasedUrl = fileItem.fullpath.substring( fileItem.fullpath.indexOf("prog"), fileItem.fullpath.length() );
-								uof.sourceLineNum = fileLineNum;
-								uof.sourceExt = FilenameUtils.getExtension(new File(fileItem.fullpath).getName());
-								r.functionsCount++;
-								
-								writer.write( String.format("%s(%d) [%s@%s]\n", uof.sourceProgBasedUrl, fileLineNum, uof.functionType, uof.functionName ));
-								
-							} else {
-								
-								String firstFileName = new File(uof.sourceName).getName();
-								String secondFileName = new File(fileItem.fullpath).getName();
-								
-								if( firstFileName.equals( secondFileName )) {								
-									System.out.format("duplicated function names : %s\n", functionNameSb );
-									System.out.format("first  : %s(%d)\n", uof.sourceName, uof.sourceLineNum );
-									System.out.format("second : %s(%d)\n", fileItem.fullpath, fileLineNum );
-								}
-							}
+					Declaration declaration = new Declaration();
+					declaration.functionName = new String( text, bounds.nameStart, bounds.nameEnd - bounds.nameStart );
+					declaration.functionType = new String( text, bounds.typeStart, bounds.typeEnd - bounds.typeStart );
+					declaration.isStatic = regionContainsWord( text, previousStart, bounds.nameStart, "static" );
+					declaration.lineNum = fileLineNum;
+					declaration.parsingId = fd.parsingCount;
+					fd.declarations.add( declaration );
+				}
+			}					
+		}				
+		
+		// the type of file is known once for all its lines
+		
+    	if( kind.isCpp() ) {
+    		fd.cppFilesSourceLineCount = fd.sourceLineCount;
+    	}
+    	else if( kind == FileTable.Ext.PC ) {
+    		fd.pcFilesSourceLineCount = fd.sourceLineCount;
+    	}
+		
+		if( fd.code != null ) {
+			fd.code.lineCount = reader.lineCount;
+			fd.code.trim();
+		}
+		
+		return fd;
+	}
+	
+	void mergeFunctionDeclaration( FileTable.FileItem fileItem, FileDeclarations fd, int parsingIdBase, Result r, Reporter reporter ) throws IOException {
 
-							r.useOfFunctions.put( uof.functionName, uof ); 
-						}
-					}					
-					
-					previous = line;
-				}				
+		r.sourceLineCount += fd.sourceLineCount;
+		r.cppFilesSourceLineCount += fd.cppFilesSourceLineCount;
+		r.pcFilesSourceLineCount += fd.pcFilesSourceLineCount;
+		
+		if( fd.code != null ) {
+			if( fileItem.id >= r.codeOfFiles.length ) {
+				r.codeOfFiles = Arrays.copyOf( r.codeOfFiles, Math.max( fileItem.id + 1, fileItem.table.size() ));
+			}
+			r.codeOfFiles[fileItem.id] = fd.code;
+		}
+		
+		if( fileItem.id >= r.includesOfFiles.length ) {
+			r.includesOfFiles = Arrays.copyOf( r.includesOfFiles, Math.max( fileItem.id + 1, fileItem.table.size() ));
+		}
+		r.includesOfFiles[fileItem.id] = fd.includes.toArray( new String[0] );
+		
+		if( incremental ) {
+			if( fileItem.id >= r.declarationsOfFiles.length ) {
+				r.declarationsOfFiles = Arrays.copyOf( r.declarationsOfFiles, Math.max( fileItem.id + 1, fileItem.table.size() ));
+			}
+			r.declarationsOfFiles[fileItem.id] = fd;
+		}
+		
+		if( fileItem.id >= r.definitionsOfFiles.length ) {
+			r.definitionsOfFiles = Arrays.copyOf( r.definitionsOfFiles, Math.max( fileItem.id + 1, fileItem.table.size() ));
+		}
+		int[] definitions = new int[fd.declarations.size() * 2];
+		int definitionCount = 0;
+		
+		for( Declaration declaration : fd.declarations ) {
+			
+			if( quiet == false ) {
+				reporter.console( Level.DETAIL, "-functionName->%s@%s<-%d\n", declaration.functionType, declaration.functionName, parsingIdBase + declaration.parsingId );
+			}
+			
+			int fileLineNum = declaration.lineNum;
+			
+			// the same function : same name and linkage, from the same file when static (the static functions of other files are other ones)
+			
+			int symbolId = r.symbols.find( declaration.functionName );
+			while( symbolId != -1 && ( r.symbols.isStatic[symbolId] != declaration.isStatic || ( declaration.isStatic && r.symbols.fileIds[symbolId] != fileItem.id ))) {
+				symbolId = r.symbols.nextSameName[symbolId];
+			}
+			
+			if( symbolId == -1 ) {
+				
+				// if not already done for this function_name
+				// add it to the symbols
+				
+				symbolId = r.symbols.add( declaration.functionName, declaration.functionType, declaration.isStatic, fileItem.id, fileLineNum );
+				r.functionsCount++;
+				
+				if( quiet == false ) {
+					reporter.log( Level.DETAIL, "%s(%d) [%s@%s]\n", fileItem.progPath(), fileLineNum, declaration.functionType, declaration.functionName );
+				}
+				
+			} else {
+				
+				FileTable.FileItem firstFileItem = fileItem.table.get( r.symbols.fileIds[symbolId] );
+				
+				if( firstFileItem.name.equals( fileItem.name )) {								
+					reporter.console( Level.WARNING, "duplicated function names : %s\n", declaration.functionName );
+					reporter.console( Level.WARNING, "first  : %s(%d)\n", firstFileItem.fullpath, r.symbols.lineNums[symbolId] );
+					reporter.console( Level.WARNING, "second : %s(%d)\n", fileItem.fullpath, fileLineNum );
+				}
 			}
+			
+			// the body found here is the one of the symbol (the first one for a duplicated function)
+			
+			definitions[definitionCount++] = fileLineNum;
+			definitions[definitionCount++] = symbolId;
+		}
+		
+		r.definitionsOfFiles[fileItem.id] = definitions;
+	}
+	
+	void censusFunctionDeclaration( List<FileTable.FileItem> fileItems, Result r, Reporter reporter ) throws IOException {
+		
+		// files are parsed independently (possibly in parallel) ...
+		
+		FileDeclarations[] parsed = new FileDeclarations[fileItems.size()];
+		AtomicInteger nextFile = new AtomicInteger( 0 );
+		
+		runWorkers( fileItems.size(), () -> {
+			
+			SourceReader reader = newSourceReader(); // buffers reused from a file to the other
+			
+			int fileIndex;
+			while( ( fileIndex = nextFile.getAndIncrement() ) < fileItems.size() ) {
+				FileTable.FileItem fileItem = fileItems.get( fileIndex );
+				
+				Instrumentation.SlowFileEvent event = ( instrumentation != null ) ? instrumentation.beginFile() : null;
+				long start = System.nanoTime();
+				
+				parsed[fileIndex] = ( cache != null ) ? cache.parseFunctionDeclaration( fileItem, reader ) : parseFunctionDeclaration( fileItem, reader.read( fileItem.fullpath ) );
+				
+				if( event != null ) {
+					instrumentation.endFile( event, "declaration census", fileItem.fullpath, parsed[fileIndex].readLineCount, parsed[fileIndex].readByteCount, System.nanoTime() - start );
+				}
+			}
+			return null;
+		});
+		
+		// ... then merged in the files order : the first declaration wins and the outputs are the ones of a serial run
+		
+		int parsingId = 1;
+		
+		for( int fileIndex = 0 ; fileIndex < fileItems.size() ; fileIndex++ ) {
+			
+			mergeFunctionDeclaration( fileItems.get( fileIndex ), parsed[fileIndex], parsingId, r, reporter );
+			parsingId += parsed[fileIndex].parsingCount;
+			r.readLineCount += parsed[fileIndex].readLineCount;
+			r.readByteCount += parsed[fileIndex].readByteCount;
+			parsed[fileIndex] = null;
 		}
 	}
 	
 	// function use census
 	
-	void detectFunctionUse( String file, int lineNum, String line, Map< String, UseOfFunction > useOfFunctions ) {
+	void detectFunctionUse( int fileId, int lineNum, char[] text, int start, int end, FunctionMatcher matcher, FunctionMatcher.LineScan scan, int[] useCounts, FunctionMatcher.Overlay overlay ) {
+		
+		// all the function names present into the line are found in one pass, as the symbols seen from the file :
+		// the static functions of the overlay of the file hide the global ones, the static functions of other files are not looked up
+		
+		matcher.scan( text, start, end, scan, overlay );
 		
-		Set<String> functionNames = useOfFunctions.keySet();
+		SymbolTable symbols = matcher.symbols;
 		
-		for( String functionName : functionNames ) {
+		for( int hit = 0 ; hit < scan.hitCount ; hit++ ) {
 			
-			// for each functions
+			int symbolId = scan.hits[hit];
 			
-			int chpos = line.indexOf( functionName );
-			if( chpos != -1 ) {
-				
-				UseOfFunction uof = useOfFunctions.get( functionName );
-
-				// count use of other than the declaration
+			// count use of other than the declaration
 
-				if( file.equals(uof.sourceName) == false ) {
-					uof.useCount++;
+			if( fileId != symbols.fileIds[symbolId] ) {
+				useCounts[symbolId]++;
+			}
+			else {
+		
+				if( lineNum != symbols.lineNums[symbolId] ) {
+					useCounts[symbolId]++;
 				}
-				else {
+			}			
+		}
+	}
+	
+	// caller -> callee edges of a line once its hits resolved by detectFunctionUse
+	// out of the body of any declared function (main and the like, tables of function pointers, macros) the used functions are roots,
+	// except at file scope when followed by a parenthesis : a prototype (a call can't be there)
+	
+	static void addCalls( int caller, boolean fileScope, char[] text, int end, FunctionMatcher.LineScan scan, CallGraph.Edges edges ) {
+		
+		for( int hit = 0 ; hit < scan.hitCount ; hit++ ) {
+			
+			int symbolId = scan.hits[hit];
+			
+			if( symbolId == caller ) {
+				continue;
+			}
 			
-					if( lineNum != uof.sourceLineNum ) {
-						uof.useCount++;	
+			if( caller != -1 ) {
+				edges.add( caller, symbolId );
+			}
+			else if( fileScope == false || isFollowedBy( text, scan.hitEnds[hit], end, '(' ) == false ) {
+				edges.roots.set( symbolId );
+			}
+		}
+	}
+	
+	static boolean isFollowedBy( char[] text, int start, int end, char ch ) {
+		
+		int chpos = start;
+		while( chpos < end && text[chpos] == ' ' ) {
+			chpos++;
+		}
+		return chpos < end && text[chpos] == ch;
+	}
+	
+	// by file id, the static functions seen from the file (sorted ids, null when none) :
+	// a static function is seen from its file and from the census files linked to it by #include (one including the other)
+	
+	static int[][] visibleStatics( int[][] scopes, SymbolTable symbols ) {
+		
+		int fileCount = scopes.length;
+		
+		// the static functions by declaration file, ids in order
+		
+		int[] staticStarts = new int[fileCount + 1];
+		for( int id = 0 ; id < symbols.size() ; id++ ) {
+			if( symbols.isStatic[id] && symbols.fileIds[id] < fileCount ) {
+				staticStarts[symbols.fileIds[id] + 1]++;
+			}
+		}
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			staticStarts[fileId + 1] += staticStarts[fileId];
+		}
+		
+		int[] staticIds = new int[staticStarts[fileCount]];
+		int[] fills = Arrays.copyOf( staticStarts, fileCount );
+		for( int id = 0 ; id < symbols.size() ; id++ ) {
+			if( symbols.isStatic[id] && symbols.fileIds[id] < fileCount ) {
+				staticIds[fills[symbols.fileIds[id]]++] = id;
+			}
+		}
+		
+		// its own ones, then the ones of the files it includes and the ones of the files including it
+		
+		int[][] visible = new int[fileCount][];
+		int[] visibleCounts = new int[fileCount];
+		
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			
+			addStatics( visible, visibleCounts, fileId, staticIds, staticStarts[fileId], staticStarts[fileId + 1] );
+			
+			if( scopes[fileId] == null ) {
+				continue;
+			}
+			for( int includedId : scopes[fileId] ) {
+				addStatics( visible, visibleCounts, fileId, staticIds, staticStarts[includedId], staticStarts[includedId + 1] );
+				addStatics( visible, visibleCounts, includedId, staticIds, staticStarts[fileId], staticStarts[fileId + 1] );
+			}
+		}
+		
+		// sorted, the files including each other give the same ones twice
+		
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			
+			if( visible[fileId] == null ) {
+				continue;
+			}
+			
+			int[] ids = visible[fileId];
+			Arrays.sort( ids, 0, visibleCounts[fileId] );
+			
+			int count = 0;
+			for( int index = 0 ; index < visibleCounts[fileId] ; index++ ) {
+				if( index == 0 || ids[index] != ids[index - 1] ) {
+					ids[count++] = ids[index];
+				}
+			}
+			visible[fileId] = Arrays.copyOf( ids, count );
+		}
+		
+		return visible;
+	}
+	
+	static void addStatics( int[][] visible, int[] visibleCounts, int fileId, int[] staticIds, int start, int end ) {
+		
+		if( start == end ) {
+			return;
+		}
+		
+		int count = visibleCounts[fileId];
+		
+		if( visible[fileId] == null ) {
+			visible[fileId] = new int[Math.max( 4, end - start )];
+		}
+		else if( count + end - start > visible[fileId].length ) {
+			visible[fileId] = Arrays.copyOf( visible[fileId], Math.max( visible[fileId].length * 2, count + end - start ));
+		}
+		
+		System.arraycopy( staticIds, start, visible[fileId], count, end - start );
+		visibleCounts[fileId] = count + end - start;
+	}
+	
+	// by file id, the census files included by the file, directly or through other census files (sorted ids, null when none)
+	// the #include names are matched to the census files by name, whatever their folder (the headers out of the census are not read)
+	
+	int[][] includeScopes( List<FileTable.FileItem> fileItems, Result r ) {
+		
+		Map<String,List<Integer>> fileIdsByName = new HashMap<String,List<Integer>>();
+		int maxFileId = -1;
+		
+		for( FileTable.FileItem fileItem : fileItems ) {
+			fileIdsByName.computeIfAbsent( fileItem.name.toLowerCase( Locale.ROOT ), ( name ) -> new ArrayList<Integer>() ).add( fileItem.id );
+			maxFileId = Math.max( maxFileId, fileItem.id );
+		}
+		
+		int[][] direct = new int[maxFileId + 1][];
+		
+		for( FileTable.FileItem fileItem : fileItems ) {
+			
+			String[] includes = ( fileItem.id < r.includesOfFiles.length ) ? r.includesOfFiles[fileItem.id] : null;
+			if( includes == null ) {
+				continue;
+			}
+			
+			List<Integer> includedIds = new ArrayList<Integer>();
+			for( String include : includes ) {
+				includedIds.addAll( fileIdsByName.getOrDefault( include.toLowerCase( Locale.ROOT ), List.of() ));
+			}
+			
+			if( includedIds.isEmpty() == false ) {
+				direct[fileItem.id] = includedIds.stream().mapToInt( Integer::intValue ).toArray();
+			}
+		}
+		
+		int[][] scopes = new int[maxFileId + 1][];
+		int[] stamps = new int[maxFileId + 1];
+		int[] stack = new int[maxFileId + 1];
+		
+		for( int fileId = 0 ; fileId <= maxFileId ; fileId++ ) {
+			
+			if( direct[fileId] == null ) {
+				continue;
+			}
+			
+			// depth first walk of the includes, each file once
+			
+			int stamp = fileId + 1;
+			int stackSize = 0;
+			int scopeSize = 0;
+			int[] scope = new int[4];
+			
+			stamps[fileId] = stamp;
+			stack[stackSize++] = fileId;
+			
+			while( stackSize > 0 ) {
+				
+				int[] includedIds = direct[stack[--stackSize]];
+				if( includedIds == null ) {
+					continue;
+				}
+				
+				for( int includedId : includedIds ) {
+					
+					if( stamps[includedId] == stamp ) {
+						continue;
+					}
+					stamps[includedId] = stamp;
+					stack[stackSize++] = includedId;
+					
+					if( scopeSize == scope.length ) {
+						scope = Arrays.copyOf( scope, scopeSize * 2 );
 					}
-				}			
+					scope[scopeSize++] = includedId;
+				}
 			}
+			
+			scope = Arrays.copyOf( scope, scopeSize );
+			Arrays.sort( scope );
+			scopes[fileId] = scope;
+		}
+		
+		return scopes;
+	}
+	
+	CodeLines readCodeLines( FileTable.FileItem fileItem, SourceReader reader ) throws IOException {
+		
+		// code lines of a file not kept by the declaration census
+		
+		CodeLines code = new CodeLines();
+		
+		reader.read( fileItem.fullpath );
+		CLexer lexer = reader.lex();
+		
+		for( int lineIndex = 0 ; lineIndex < reader.lineCount ; lineIndex++ ) {
+			
+			if( lexer.dead[lineIndex] ) { continue; }
+			
+			code.addLine( lineIndex + 1, lexer.code, reader.lineStarts[lineIndex], reader.lineEnds[lineIndex] );
 		}
+		
+		code.lineCount = reader.lineCount;
+		return code;
 	}
 
-	void censusFunctionUse( List<FolderWalker.FileItem> fileItems, Result r, BufferedWriter writer ) throws IOException {
+	// use census of a single file : counted into useCounts, the edges into edges (null : none), the hit symbols into fileUses (null : none)
+	
+	void censusFileUse( FileTable.FileItem fileItem, CodeLines code, Result r, FunctionMatcher matcher, FunctionMatcher.LineScan scan, int[][] visibleStatics, int[] useCounts, CallGraph.Edges edges, FileUses fileUses ) {
+		
+		FunctionMatcher.Overlay overlay = ( fileItem.id < visibleStatics.length ) ? matcher.overlay( visibleStatics[fileItem.id] ) : null;
+		BodyTracker bodies = ( edges != null ) ? new BodyTracker( ( fileItem.id < r.definitionsOfFiles.length ) ? r.definitionsOfFiles[fileItem.id] : null ) : null;
 		
-		for( FolderWalker.FileItem fileItem : fileItems ) {
+		for( int index = 0 ; index < code.count ; index++ ) {
 			
-			// for each source file
+			detectFunctionUse( fileItem.id, code.lineNums[index], code.text, code.lineStart( index ), code.lineEnds[index], matcher, scan, useCounts, overlay );
 			
-			System.out.format("census use of %s\n", fileItem.fullpath );
+			if( fileUses != null ) {
+				for( int hit = 0 ; hit < scan.hitCount ; hit++ ) {
+					fileUses.hit( scan.hits[hit] );
+				}
+			}
 			
-			int lineNum = 0;
-			int scannedLines = 0;
-
-			try( BufferedReader reader = new BufferedReader( new FileReader( fileItem.fullpath )) )
-			{
-				while( true ) {
-
-					String line = reader.readLine();
-					if( line == null ) { break; }
+			if( bodies != null ) {
+				bodies.line( code.lineNums[index], code.text, code.lineStart( index ), code.lineEnds[index] );
+				addCalls( bodies.lineCaller, bodies.lineAtFileScope, code.text, code.lineEnds[index], scan, edges );
+			}
+		}
+	}
+	
+	class WorkerUses {
+		
+		int[] useCounts;
+		CallGraph.Edges edges; // null when no call graph
+	}
+	
+	// the declared function whose body holds each code line of a file, from the braces (comments and literals already blanked) :
+	// the body of a function is the first block opened at file scope after its declaration line, until it is closed
+	// an unbalanced brace (as into alternate #ifdef groups) lasts up to the next declaration only
+	
+	static class BodyTracker {
+		
+		int[] definitions; // pairs (declaration line, symbol id), in line order
+		int nextDefinition = 0;
+		int opening = -1; // declared function whose body is still to be opened
+		int caller = -1;  // declared function whose body is open, -1 : file scope or block of no declared function
+		int depth = 0;
+		
+		int lineCaller;          // caller of the uses of the last line
+		boolean lineAtFileScope; // the last line is out of any block (a directive line is not, it may be expanded anywhere)
+		
+		BodyTracker( int[] definitions ) {
+			this.definitions = definitions;
+		}
+		
+		void line( int lineNum, char[] text, int start, int end ) {
+			
+			while( definitions != null && nextDefinition < definitions.length && definitions[nextDefinition] <= lineNum ) {
+				opening = definitions[nextDefinition + 1];
+				caller = -1;
+				depth = 0;
+				nextDefinition += 2;
+			}
+			
+			lineCaller = caller;
+			lineAtFileScope = ( depth == 0 ) && ( start == end || text[start] != '#' );
+			
+			for( int chpos = start ; chpos < end ; chpos++ ) {
+				
+				if( text[chpos] == '{' ) {
 					
-					lineNum++;
+					if( depth == 0 ) {
+						lineAtFileScope = false;
+						if( opening != -1 ) {
+							caller = opening;
+							opening = -1;
+							if( lineCaller == -1 ) {
+								lineCaller = caller; // body opened on the line
+							}
+						}
+					}
+					depth++;
+				}
+				else if( text[chpos] == '}' && depth > 0 ) {
+					
+					depth--;
+					if( depth == 0 ) {
+						caller = -1;
+					}
+				}
+			}
+		}
+	}
+	
+	void censusFunctionUse( List<FileTable.FileItem> fileItems, Result r, Reporter reporter ) throws IOException {
+		
+		// matcher built once from all the declared function names
+		FunctionMatcher matcher = new FunctionMatcher( r.symbols, wholeIdentifiers );
+		
+		// where the static functions are seen from
+		int[][] visibleStatics = visibleStatics( includeScopes( fileItems, r ), r.symbols );
+		
+		// per file results, filled by the workers at the file index
+		FileUses[] fileUsesOfIndex = incremental ? new FileUses[fileItems.size()] : null;
+		int[] scannedLines = new int[fileItems.size()];
+		int[] lineCounts = new int[fileItems.size()];
+		long[] readByteCounts = new long[fileItems.size()]; // of the files read again
+		
+		AtomicInteger nextFile = new AtomicInteger( 0 );
+		
+		List<WorkerUses> workersUses = runWorkers( fileItems.size(), () -> {
+			
+			// each worker counts into its own array (and collects its own edges), merged at the end
+			FunctionMatcher.LineScan scan = matcher.new LineScan();
+			WorkerUses uses = new WorkerUses();
+			uses.useCounts = new int[matcher.patternCount];
+			uses.edges = ( callGraph && incremental == false ) ? new CallGraph.Edges() : null;
+			int[] fileCounts = incremental ? new int[matcher.patternCount] : null; // uses of the current file (incremental)
+			SourceReader reader = null; // created on the first file to read
+			
+			int fileIndex;
+			while( ( fileIndex = nextFile.getAndIncrement() ) < fileItems.size() ) {
+				
+				// for each source file
+				
+				FileTable.FileItem fileItem = fileItems.get( fileIndex );
+				
+				if( parallel == false && quiet == false ) {
+					reporter.console( Level.PROGRESS, "census use of %s\n", fileItem.fullpath );
+				}
+				
+				Instrumentation.SlowFileEvent event = ( instrumentation != null ) ? instrumentation.beginFile() : null;
+				long start = System.nanoTime();
+				
+				CodeLines code = ( fileItem.id < r.codeOfFiles.length ) ? r.codeOfFiles[fileItem.id] : null;
+				if( code == null ) {
+					if( reader == null ) {
+						reader = newSourceReader();
+					}
+					code = readCodeLines( fileItem, reader );
+					readByteCounts[fileIndex] = reader.bytes.remaining();
+				}
+				
+				if( incremental ) {
 					
-					if( isCommented( line ) ) { continue; }
+					// the uses of the file are kept apart, to be subtracted when it changes
 					
-					scannedLines++;
-					detectFunctionUse( fileItem.fullpath, lineNum, line, r.useOfFunctions );
+					FileUses fileUses = new FileUses();
+					fileUses.edges = callGraph ? new CallGraph.Edges() : null;
+					censusFileUse( fileItem, code, r, matcher, scan, visibleStatics, fileCounts, fileUses.edges, fileUses );
+					fileUses.collect( fileCounts, uses.useCounts );
+					fileUsesOfIndex[fileIndex] = fileUses;
+				}
+				else {
+					censusFileUse( fileItem, code, r, matcher, scan, visibleStatics, uses.useCounts, uses.edges, null );
+				}
+				
+				scannedLines[fileIndex] = code.count;
+				lineCounts[fileIndex] = code.lineCount;
+				
+				if( event != null ) {
+					instrumentation.endFile( event, "use census", fileItem.fullpath, code.lineCount, readByteCounts[fileIndex], System.nanoTime() - start );
+				}
+			}
+			
+			return uses;
+		});
+		
+		// merge, the per file lines keep the files order whatever the workers scheduling
+		
+		List<CallGraph.Edges> workersEdges = new ArrayList<CallGraph.Edges>();
+		
+		for( WorkerUses uses : workersUses ) {
+			for( int patternId = 0 ; patternId < uses.useCounts.length ; patternId++ ) {
+				r.symbols.useCounts[patternId] += uses.useCounts[patternId];
+			}
+			if( uses.edges != null ) {
+				workersEdges.add( uses.edges );
+			}
+		}
+		
+		if( incremental ) {
+			
+			for( int fileIndex = 0 ; fileIndex < fileItems.size() ; fileIndex++ ) {
+				
+				FileTable.FileItem fileItem = fileItems.get( fileIndex );
+				if( fileItem.id >= r.usesOfFiles.length ) {
+					r.usesOfFiles = Arrays.copyOf( r.usesOfFiles, Math.max( fileItem.id + 1, fileItem.table.size() ));
+				}
+				r.usesOfFiles[fileItem.id] = fileUsesOfIndex[fileIndex];
+			}
+			
+			r.matcher = matcher;
+			r.visibleStatics = visibleStatics;
+		}
+		
+		if( callGraph ) {
+			r.calls = incremental ? callGraphOfFiles( r ) : new CallGraph( r.symbols.size(), workersEdges );
+		}
+		
+		for( int fileIndex = 0 ; fileIndex < fileItems.size() ; fileIndex++ ) {
+			
+			String fullpath = fileItems.get( fileIndex ).fullpath;
+			
+			setLineCounts( fileItems.get( fileIndex ), lineCounts[fileIndex], scannedLines[fileIndex], r );
+			r.scannedLineCount += scannedLines[fileIndex];
+			if( readByteCounts[fileIndex] > 0 ) {
+				r.readLineCount += lineCounts[fileIndex];
+				r.readByteCount += readByteCounts[fileIndex];
+			}
+			
+			if( quiet == false ) {
+				if( parallel ) {
+					reporter.console( Level.PROGRESS, "census use of %s\n", fullpath );
+				}
+				reporter.log( Level.PROGRESS, "census use of %s (%d/%d)\n", fullpath, scannedLines[fileIndex], lineCounts[fileIndex] );
+			}
+		}
+	}
+	
+	// ------- incremental updates -------------
+	
+	CallGraph callGraphOfFiles( Result r ) {
+		
+		List<CallGraph.Edges> filesEdges = new ArrayList<CallGraph.Edges>();
+		for( FileUses fileUses : r.usesOfFiles ) {
+			if( fileUses != null && fileUses.edges != null ) {
+				filesEdges.add( fileUses.edges );
+			}
+		}
+		return new CallGraph( r.symbols.size(), filesEdges );
+	}
+	
+	// same functions (name, type, linkage) in the same order, same includes : the symbols and the scopes stay as they are
+	
+	static boolean sameDeclarations( FileDeclarations fd1, FileDeclarations fd2 ) {
+		
+		if( fd1.declarations.size() != fd2.declarations.size() || fd1.includes.equals( fd2.includes ) == false ) {
+			return false;
+		}
+		
+		for( int index = 0 ; index < fd1.declarations.size() ; index++ ) {
+			
+			Declaration declaration1 = fd1.declarations.get( index );
+			Declaration declaration2 = fd2.declarations.get( index );
+			
+			if( declaration1.functionName.equals( declaration2.functionName ) == false
+				|| declaration1.functionType.equals( declaration2.functionType ) == false
+				|| declaration1.isStatic != declaration2.isStatic ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	// update of an incremental result for a modified file of the census : its previous uses are subtracted, the new ones added
+	// false when the file declares other functions or includes other files : its new declarations are kept, the result is to be rebuilt
+	
+	public boolean updateFile( FileTable.FileItem fileItem, Result r, Reporter reporter ) throws IOException {
+		
+		SourceReader reader = newSourceReader();
+		CodeLines code;
+		
+		FileDeclarations previous = ( fileItem.id < r.declarationsOfFiles.length ) ? r.declarationsOfFiles[fileItem.id] : null;
+		
+		if( previous != null ) {
+			
+			FileDeclarations fd = parseFunctionDeclaration( fileItem, reader.read( fileItem.fullpath ) );
+			r.declarationsOfFiles[fileItem.id] = fd;
+			
+			if( sameDeclarations( previous, fd ) == false ) {
+				return false;
+			}
+			
+			// the declarations may have moved : lines of the symbols first declared here, and of the bodies
+			
+			int[] definitions = r.definitionsOfFiles[fileItem.id];
+			Set<Integer> moved = new HashSet<Integer>();
+			
+			for( int index = 0 ; index < fd.declarations.size() ; index++ ) {
+				
+				int symbolId = definitions[index * 2 + 1];
+				int lineNum = fd.declarations.get( index ).lineNum;
+				
+				if( r.symbols.fileIds[symbolId] == fileItem.id && moved.add( symbolId ) ) {
+					r.symbols.lineNums[symbolId] = lineNum;
 				}
+				definitions[index * 2] = lineNum;
+			}
+			
+			r.sourceLineCount += fd.sourceLineCount - previous.sourceLineCount;
+			r.cppFilesSourceLineCount += fd.cppFilesSourceLineCount - previous.cppFilesSourceLineCount;
+			r.pcFilesSourceLineCount += fd.pcFilesSourceLineCount - previous.pcFilesSourceLineCount;
+			r.codeOfFiles[fileItem.id] = fd.code;
+			code = fd.code;
+		}
+		else {
+			code = readCodeLines( fileItem, reader ); // file of the use census only
+		}
+		
+		FileUses fileUses = new FileUses();
+		fileUses.edges = callGraph ? new CallGraph.Edges() : null;
+		int[] fileCounts = new int[r.matcher.patternCount];
+		
+		censusFileUse( fileItem, code, r, r.matcher, r.matcher.new LineScan(), r.visibleStatics, fileCounts, fileUses.edges, fileUses );
+		
+		if( fileItem.id < r.usesOfFiles.length && r.usesOfFiles[fileItem.id] != null ) {
+			r.usesOfFiles[fileItem.id].subtractFrom( r.symbols.useCounts );
+		}
+		else if( fileItem.id >= r.usesOfFiles.length ) {
+			r.usesOfFiles = Arrays.copyOf( r.usesOfFiles, Math.max( fileItem.id + 1, fileItem.table.size() ));
+		}
+		fileUses.collect( fileCounts, r.symbols.useCounts );
+		r.usesOfFiles[fileItem.id] = fileUses;
+		setLineCounts( fileItem, code.lineCount, code.count, r );
+		
+		if( callGraph ) {
+			r.calls = callGraphOfFiles( r );
+		}
+		
+		if( quiet == false ) {
+			reporter.log( Level.PROGRESS, "census use of %s updated (%d/%d)\n", fileItem.fullpath, code.count, code.lineCount );
+		}
+		return true;
+	}
+	
+	// incremental result built again from the declarations and the code kept per file, after a change of the files or of their declarations :
+	// only the files without kept declarations (new or changed ones) and the files of the use census only are read
+	
+	public Result rebuild( List<FileTable.FileItem> declaringItems, List<FileTable.FileItem> fileItems, Result previous, Reporter reporter ) throws IOException {
+		
+		Result r = new Result();
+		SourceReader reader = newSourceReader();
+		int parsingId = 1;
+		
+		for( FileTable.FileItem fileItem : declaringItems ) {
+			
+			FileDeclarations fd = ( fileItem.id < previous.declarationsOfFiles.length ) ? previous.declarationsOfFiles[fileItem.id] : null;
+			if( fd == null ) {
+				fd = parseFunctionDeclaration( fileItem, reader.read( fileItem.fullpath ) );
 			}
 			
-			writer.write(String.format("census use of %s (%d/%d)\n", fileItem.fullpath, scannedLines, lineNum ));			
+			mergeFunctionDeclaration( fileItem, fd, parsingId, r, reporter );
+			parsingId += fd.parsingCount;
 		}
+		
+		censusFunctionUse( fileItems, r, reporter );
+		return r;
+	}
+	
+	void setLineCounts( FileTable.FileItem fileItem, int lineCount, int sourceLineCount, Result r ) {
+		
+		if( fileItem.id >= r.lineCountsOfFiles.length ) {
+			int capacity = Math.max( fileItem.id + 1, fileItem.table.size() );
+			r.lineCountsOfFiles = Arrays.copyOf( r.lineCountsOfFiles, capacity );
+			r.sourceLineCountsOfFiles = Arrays.copyOf( r.sourceLineCountsOfFiles, capacity );
+		}
+		r.lineCountsOfFiles[fileItem.id] = lineCount;
+		r.sourceLineCountsOfFiles[fileItem.id] = sourceLineCount;
+	}
+	
+	// run the same worker several times in parallel (or once on the calling thread when not in parallel mode)
+	// the workers share their input through an index, their results are returned in worker order
+	
+	<T> List<T> runWorkers( int jobCount, Callable<T> worker ) throws IOException {
+		
+		int workerCount = parallel ? Math.max( 1, Math.min( parallelism, jobCount )) : 1;
+		
+		List<T> results = new ArrayList<T>();
+		
+		if( workerCount == 1 ) {
+			try {
+				results.add( worker.call() );
+			}
+			catch( IOException | RuntimeException e ) {
+				throw e;
+			}
+			catch( Exception e ) {
+				throw new IOException( e );
+			}
+			return results;
+		}
+		
+		// the allocation of the pool threads is added to the one of the calling thread
+		
+		Callable<T> measuredWorker = ( instrumentation == null ) ? worker : () -> {
+			
+			long allocated = instrumentation.threadAllocated();
+			try {
+				return worker.call();
+			}
+			finally {
+				instrumentation.addWorkerAllocated( instrumentation.threadAllocated() - allocated );
+			}
+		};
+		
+		List<Callable<T>> workers = new ArrayList<Callable<T>>();
+		for( int workerId = 0 ; workerId < workerCount ; workerId++ ) {
+			workers.add( measuredWorker );
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool( workerCount );
+		
+		try {
+			for( Future<T> future : pool.invokeAll( workers ) ) {
+				results.add( future.get() );
+			}
+		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IOException( e );
+		}
+		catch( ExecutionException e ) {
+			if( e.getCause() instanceof IOException ) {
+				throw (IOException)e.getCause();
+			}
+			if( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IOException( e.getCause() );
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		return results;
 	}
 }
@@ -0,0 +1,133 @@
+package pri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// all the files found by a walk, stored by columns and identified by their id (order of addition)
+// the folders and the extensions are interned, what is derived from the path is computed once at addition
+
+public class FileTable {
+
+	public enum Ext {
+
+		C, CPP, PC, H, VCXPROJ, SLN, OTHER;
+
+		static Ext of( String ext ) {
+
+			for( Ext value : values() ) {
+				if( value != OTHER && value.name().equalsIgnoreCase( ext ) ) {
+					return value;
+				}
+			}
+			return OTHER;
+		}
+
+		public boolean isCpp() {
+			return this == C || this == CPP;
+		}
+	}
+
+	// the strings of the files are kept in the table, the other columns are primitives
+
+	String[] fullpaths = new String[256];
+	String[] names = new String[256];    // name with extension
+	String[] progPaths = new String[256]; // from the "prog" folder (the full path when there is none)
+	int[] folderIds = new int[256];
+	int[] baseLengths = new int[256];    // length of the name without extension
+	int[] extIds = new int[256];
+	Ext[] kinds = new Ext[256];
+	int count = 0;
+
+	List<String> folders = new ArrayList<String>();
+	Map<String,Integer> folderIdOf = new HashMap<String,Integer>();
+
+	List<String> exts = new ArrayList<String>(); // as found (without .), the case is kept
+	Map<String,Integer> extIdOf = new HashMap<String,Integer>();
+
+	// a file as handled by the checks : a view on its row of the table
+
+	public static class FileItem {
+
+		public final FileTable table;
+		public final int id;
+		public final String name; // name with extension
+		public final String fullpath;
+
+		FileItem( FileTable table, int id ) {
+
+			this.table = table;
+			this.id = id;
+			this.name = table.names[id];
+			this.fullpath = table.fullpaths[id];
+		}
+
+		public String basename() { return name.substring( 0, table.baseLengths[id] ); } // name without extension
+		public String ext()      { return table.exts.get( table.extIds[id] ); }
+		public Ext kind()        { return table.kinds[id]; }
+		public String folder()   { return table.folders.get( table.folderIds[id] ); }
+		public int folderId()    { return table.folderIds[id]; }
+		public String progPath() { return table.progPaths[id]; }
+	}
+
+	FileItem[] items = new FileItem[256];
+
+	// the table is filled by a single thread (the collect of the walk)
+
+	public FileItem add( String folder, String name, String fullpath ) {
+
+		if( count == fullpaths.length ) {
+
+			int capacity = count * 2;
+			fullpaths = Arrays.copyOf( fullpaths, capacity );
+			names = Arrays.copyOf( names, capacity );
+			progPaths = Arrays.copyOf( progPaths, capacity );
+			folderIds = Arrays.copyOf( folderIds, capacity );
+			baseLengths = Arrays.copyOf( baseLengths, capacity );
+			extIds = Arrays.copyOf( extIds, capacity );
+			kinds = Arrays.copyOf( kinds, capacity );
+			items = Arrays.copyOf( items, capacity );
+		}
+
+		int id = count++;
+
+		// same split as FilenameUtils.getBaseName / getExtension
+		int dotPos = name.lastIndexOf( '.' );
+		String ext = ( dotPos == -1 ) ? "" : name.substring( dotPos + 1 );
+
+		int progPos = fullpath.indexOf( "prog" );
+
+		fullpaths[id] = fullpath;
+		names[id] = name;
+		progPaths[id] = ( progPos == -1 ) ? fullpath : fullpath.substring( progPos );
+		folderIds[id] = intern( folder, folders, folderIdOf );
+		baseLengths[id] = ( dotPos == -1 ) ? name.length() : dotPos;
+		extIds[id] = intern( ext, exts, extIdOf );
+		kinds[id] = Ext.of( ext );
+
+		items[id] = new FileItem( this, id );
+		return items[id];
+	}
+
+	static int intern( String value, List<String> values, Map<String,Integer> idOf ) {
+
+		Integer id = idOf.get( value );
+
+		if( id == null ) {
+			id = values.size();
+			values.add( value );
+			idOf.put( value, id );
+		}
+		return id;
+	}
+
+	public FileItem get( int id ) {
+		return items[id];
+	}
+
+	public int size() {
+		return count;
+	}
+}
@@ -1,20 +1,27 @@
 package pri;
-import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.io.FilenameUtils;
 
+import pri.FileTable.FileItem;
+import pri.Reporter.Level;
+
 public class FolderWalker {
 	
-	public class FileItem {
-		
-		public String name; // name with extension
-		public String basename; // name without extension
-		public String ext;
-		public String folder;
-		public String fullpath;		
-	}
+	public FileTable table = new FileTable(); // all the kept files, the lists below refer to its items
 	
 	public class WalkResult {
 				
@@ -22,180 +29,283 @@ public class FolderWalker {
 		public List<FileItem> files = new ArrayList<FileItem>();
 	}	
 	
-	// walk recursively
-    public void listSource( String path, WalkResult r ) {
+	public class TreeContent {
+		
+		// all the files needed by the checks, classified during a single walk of the base folder
+		
+		public FolderWalker backref = null;
+		public List<FileItem> sources = new ArrayList<FileItem>();        // c, cpp, pc, out of the excluded folders
+		public List<FileItem> makefiles = new ArrayList<FileItem>();      // makefiles under msvc10 and gmake3
+		public List<FileItem> vcxprojs = new ArrayList<FileItem>();       // vcxproj under msvc10 (the ones of the solutions)
+		public List<FileItem> gmake3Vcxprojs = new ArrayList<FileItem>(); // vcxproj under gmake3
+		public List<FileItem> solutions = new ArrayList<FileItem>();      // sln under msvc10
+	}
+	
+	public boolean parallel = false; // fan out the sub folders over several threads
+	public int parallelism = Runtime.getRuntime().availableProcessors();
+	public Reporter reporter; // traces of the walk, to be set before walking
+	
+	// what a walk keeps, the selection may change from a folder to its sub folders
+	
+	abstract class Selection {
+		
+		boolean traceFolders = false; // print each considered folder
+		boolean traceFiles = false;   // print each kept file
+		
+		// selection to apply into the sub folder or null to skip it
+		Selection enterFolder( String name ) {
+			return this;
+		}
+		
+		// list to put the file in or null to skip it
+		abstract List<FileItem> keepFile( String name, String ext );
+	}
+	
+	static boolean isExcludedSourceFolder( String name ) {
+		
+    	// perform custom exclusions about folders .....
     	
-        File root = new File( path );
-        File[] list = root.listFiles();
-
-        if( list == null ) {
-        	return;
-        }
-
-        for( File f : list ) {
-        	
-        	String name = f.getName();
-        	
-            if( f.isDirectory() ) {
-            	
-            	// perform custom exclusions about folders .....
-            	
-            	// excluding these folders
-            	if(( 
-        			   name.equalsIgnoreCase("msvc10")
-        			|| name.equalsIgnoreCase("gmake3")
-        			|| name.equalsIgnoreCase("codebase")
-        			|| name.equalsIgnoreCase("expreval")        			
-        			|| name.equalsIgnoreCase("obj") // this folder contained linux compilated code
-           		)) {
-            		
-            		continue;
-            	}
-            	
-                System.out.println( "considering folder : " + f.getAbsoluteFile() );                
-                listSource( f.getAbsolutePath(), r );
-
-            }
-            else {
-            	
-            	// excluding these files 
-
-            	if(( 
-         			   name.equalsIgnoreCase("cJSON.c")
-            		)) {
-             		
-             		continue;
-             	}            	
-                
-            	String ext = FilenameUtils.getExtension(f.getName());
-            	
-            	// only some type
-            	if( ext.equalsIgnoreCase("c") || ext.equalsIgnoreCase("cpp")) {
-            		// ok for these type
-            	}
-            	else if ( ext.equalsIgnoreCase("pc") ) {            		
-            		// ok for these type
-            	}
-            	else {
-
-            		continue;
-            	}
-            	
-            	FileItem fi = new FileItem();
-            	fi.ext = ext; 
-            	fi.name = name;
-            	fi.basename = FilenameUtils.getBaseName(f.getName());
-            	fi.folder = path;
-            	fi.fullpath = f.getAbsolutePath();
-            	
-            	// System.out.format("%s : %s \n", f.getAbsoluteFile(), ext );
+    	// excluding these folders
+    	if(( 
+			   name.equalsIgnoreCase("msvc10")
+			|| name.equalsIgnoreCase("gmake3")
+			|| name.equalsIgnoreCase("codebase")
+			|| name.equalsIgnoreCase("expreval")        			
+			|| name.equalsIgnoreCase("obj") // this folder contained linux compilated code
+   		)) {
+    		
+    		return true;
+    	}
+    	return false;
+	}
+	
+	static boolean isSource( String name, String ext ) {
+		
+    	// excluding these files 
 
-            	r.files.add( fi );
-            }
-        }
-        
-        return;
-    }
+    	if(( 
+ 			   name.equalsIgnoreCase("cJSON.c")
+    		)) {
+     		
+     		return false;
+     	}            	
+    	
+    	// only some type
+    	if( ext.equalsIgnoreCase("c") || ext.equalsIgnoreCase("cpp")) {
+    		return true;
+    	}
+    	else if ( ext.equalsIgnoreCase("pc") ) {            		
+    		return true;
+    	}
+    	return false;
+	}
+	
+    // single walk of the base folder for all the checks : the sources out of the excluded folders,
+    // the projects (vcxproj, makefiles) of msvc10 and gmake3, the vcxproj of each one apart, plus the solutions of msvc10
     
-    public void listProject( String path, WalkResult r ) {
+    public void listAll( String baseFolder, TreeContent r ) {
     	
-        File root = new File( path );
-        File[] list = root.listFiles();
-
-        if( list == null ) {
-        	return;
-        }
-
-        for( File f : list ) {
-        	
-        	String name = f.getName();
-        	
-            if( f.isDirectory() ) {
-
-                // System.out.println( "considering folder : " + f.getAbsoluteFile() );                
-            	listProject( f.getAbsolutePath(), r );
-            }
-            else {
-
-            	// System.out.println( "considering file : " + f.getAbsoluteFile() );
-            	
-            	String ext = FilenameUtils.getExtension(f.getName());
-            	
-            	// only some type            	
-            	
+    	class ProjectSelection extends Selection {
+    		
+    		List<FileItem> vcxprojs;
+    		boolean withSolutions;
+    		
+    		ProjectSelection( List<FileItem> vcxprojs, boolean withSolutions ) {
+    			this.vcxprojs = vcxprojs;
+    			this.withSolutions = withSolutions;
+    			this.traceFiles = true;
+    		}
+    		
+    		List<FileItem> keepFile( String name, String ext ) {
+    			
             	if( ext.equalsIgnoreCase("vcxproj") ) {
-            		// ok for these type
+            		return vcxprojs;
             	}
             	else if ( name.equalsIgnoreCase("makefile") ) {            		
-            		// ok for these type
+            		return r.makefiles;
             	}
-            	else {
-            		continue;
+            	else if ( withSolutions && ext.equalsIgnoreCase("sln") ) {            		
+            		return r.solutions;
             	}
-            	
-            	FileItem fi = new FileItem();
-            	fi.ext = ext; 
-            	fi.name = name;
-            	fi.basename = FilenameUtils.getBaseName(f.getName());
-            	fi.folder = path;
-            	fi.fullpath = f.getAbsolutePath();
-            	
-            	System.out.format("%s\n", fi.fullpath);
-
-            	r.files.add( fi );
-            }
-        }
-        
-        return;
-    }    
-    
-    public void listVCXPROJ( String path, WalkResult r ) {
+            	return null;
+    		}
+    	}
     	
-        File root = new File( path );
-        File[] list = root.listFiles();
-
-        if( list == null ) {
-        	return;
-        }
-
-        for( File f : list ) {
-        	
-        	String name = f.getName();
-        	
-            if( f.isDirectory() ) {
-            	            	
-                // System.out.println( "considering folder : " + f.getAbsoluteFile() );                
-            	listVCXPROJ( f.getAbsolutePath(), r );
-            }
-            else {
-
-            	// System.out.println( "considering file : " + f.getAbsoluteFile() );
-            	
-            	String ext = FilenameUtils.getExtension(f.getName());
-            	
-            	// only some type            	
-            	
-            	if( ext.equalsIgnoreCase("vcxproj") ) {
-            		// ok for these type
-            	}
-            	else {
-            		continue;
-            	}
-            	
-            	FileItem fi = new FileItem();
-            	fi.ext = ext; 
-            	fi.name = name;
-            	fi.basename = FilenameUtils.getBaseName(f.getName());
-            	fi.folder = path;
-            	fi.fullpath = f.getAbsolutePath();
-            	
-            	System.out.format("%s\n", fi.fullpath);
-
-            	r.files.add( fi );
-            }
-        }
-        
-        return;
+    	Selection msvc10Selection = new ProjectSelection( r.vcxprojs, true );
+    	Selection gmake3Selection = new ProjectSelection( r.gmake3Vcxprojs, false );
+    	
+    	Selection sourceSelection = new Selection() {
+    		
+    		Selection enterFolder( String name ) {
+    			return isExcludedSourceFolder( name ) ? null : this;
+    		}
+    		
+    		List<FileItem> keepFile( String name, String ext ) {
+    			return isSource( name, ext ) ? r.sources : null;
+    		}
+    	};
+    	sourceSelection.traceFolders = true;
+    	
+    	Selection rootSelection = new Selection() {
+    		
+    		Selection enterFolder( String name ) {
+    			
+    			// the project folders are only searched at the base
+    			if( name.equalsIgnoreCase("msvc10") ) { return msvc10Selection; }
+    			if( name.equalsIgnoreCase("gmake3") ) { return gmake3Selection; }
+    			
+    			return sourceSelection.enterFolder( name );
+    		}
+    		
+    		List<FileItem> keepFile( String name, String ext ) {
+    			return sourceSelection.keepFile( name, ext );
+    		}
+    	};
+    	
+    	walk( baseFolder, rootSelection );
     }
     
-}	
+	// ------- walker engine -------------
+	
+	// each folder is listed by Files.walkFileTree limited to its direct entries : the attributes come with the listing 
+	// (no extra stat per entry on Windows) and the sub folders are listed by their own tasks, forked in parallel mode
+	// the results are collected in listing order, thus the same for a serial or a parallel walk
+	
+	class FolderTask extends RecursiveTask<List<Object>> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		Path folderPath;
+		String folder; // as given for the root, absolute for the sub folders
+		Selection selection;
+		
+		FolderTask( Path folderPath, String folder, Selection selection ) {
+			
+			this.folderPath = folderPath;
+			this.folder = folder;
+			this.selection = selection;
+		}
+		
+		@Override
+		protected List<Object> compute() {
+			
+			// kept files and sub folder tasks, in listing order
+			List<Object> entries = new ArrayList<Object>();
+			
+			try {
+				Files.walkFileTree( folderPath, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), 1, new SimpleFileVisitor<Path>() {
+					
+					@Override
+					public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) {
+						
+			        	String name = file.getFileName().toString();
+			        	
+			            if( attrs.isDirectory() ) {
+			            	
+			            	Selection subFolderSelection = selection.enterFolder( name );
+			            	
+			            	if( subFolderSelection != null ) {
+			            		
+			            		FolderTask subFolderTask = new FolderTask( file, file.toAbsolutePath().toString(), subFolderSelection );
+			            		if( parallel ) {
+			            			subFolderTask.fork();
+			            		}
+			            		entries.add( subFolderTask );
+			            	}
+			            }
+			            else {
+			            	
+			            	String ext = FilenameUtils.getExtension( name );
+			            	List<FileItem> target = selection.keepFile( name, ext );
+			            	
+			            	if( target != null ) {
+			            		
+				            	// added to the table when collected, thus the file ids follow the listing order
+				            	entries.add( new KeptFile( folder, name, file.toAbsolutePath().toString(), target, selection.traceFiles ) );
+			            	}
+			            }
+			            
+						return FileVisitResult.CONTINUE;
+					}
+					
+					@Override
+					public FileVisitResult visitFileFailed( Path file, IOException e ) {
+						
+						// unreadable entry, skipped as File.listFiles() did
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+			catch( IOException e ) {
+				throw new UncheckedIOException( e );
+			}
+			
+			return entries;
+		}
+	}
+	
+	class KeptFile {
+		
+		String folder;
+		String name;
+		String fullpath;
+		List<FileItem> target;
+		boolean trace;
+		
+		KeptFile( String folder, String name, String fullpath, List<FileItem> target, boolean trace ) {
+			
+			this.folder = folder;
+			this.name = name;
+			this.fullpath = fullpath;
+			this.target = target;
+			this.trace = trace;
+		}
+	}
+	
+	void walk( String path, Selection selection ) {
+		
+		FolderTask rootTask = new FolderTask( Paths.get( path ), path, selection );
+		
+		if( parallel == false ) {
+			collect( rootTask.invoke() );
+			return;
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool( parallelism );
+		
+		try {
+			collect( pool.invoke( rootTask ) );
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	void collect( List<Object> entries ) {
+		
+		for( Object entry : entries ) {
+			
+			if( entry instanceof FolderTask ) {
+				
+				FolderTask subFolderTask = (FolderTask)entry;
+				
+				if( subFolderTask.selection.traceFolders ) {
+					reporter.console( Level.PROGRESS, "considering folder : %s\n", subFolderTask.folder );
+				}
+				
+				// serial walk : the sub folder is listed right now
+				collect( parallel ? subFolderTask.join() : subFolderTask.invoke() );
+			}
+			else {
+				
+				KeptFile kept = (KeptFile)entry;
+				
+				if( kept.trace ) {
+	            	reporter.console( Level.DETAIL, "%s\n", kept.fullpath );
+				}
+				
+				kept.target.add( table.add( kept.folder, kept.name, kept.fullpath ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package pri;
+
+import java.util.Arrays;
+
+// finds the declared function names used into a line, the hits are the symbols seen from the scanned file
+// each line is scanned only once, whatever the number of functions :
+//   whole identifiers : the line is split into C identifiers, each one looked up into the table of the names (get does not match getValue)
+//   substrings : any occurrence of a name, found by a multi-pattern automaton (Aho-Corasick) built once from all the names
+// the names which are not C identifiers (as "x.name" taken by the declaration heuristic) are matched as substrings in both modes
+// the table of the names holds the global functions only : the static ones are looked up into the overlay of the file,
+// a small table of the static functions seen from it, which hide the global ones of the same name
+
+public class FunctionMatcher {
+
+	public class LineScan {
+
+		// scratch state of a scan (one per thread, the automaton itself is read only)
+
+		int[] seen = new int[patternCount]; // stamp of the last line where the pattern was found
+		int stamp = 0;
+
+		public int[] hits = new int[patternCount]; // symbol ids found into the last scanned line
+		public int[] hitEnds = new int[patternCount]; // end of their first occurrence into the text
+		public int hitCount = 0;
+	}
+
+	// static functions seen from a file, built by overlay()
+
+	public class Overlay {
+
+		int[] slots;
+	}
+
+	SymbolTable symbols;
+	int patternCount;
+	boolean wholeIdentifiers;
+	boolean withAutomaton; // some names are matched as substrings
+
+	int[] globalSlots;  // open addressing from the hash of the name to id + 1 (0 is a free slot), global functions only
+	int[] globalOfName; // by first symbol of a name (automaton outputs), the global function of the name or -1
+
+	// trie nodes stored as parallel arrays, node 0 is the root
+
+	int[] firstChild;
+	int[] nextSibling;
+	char[] label;
+	int[] fail;
+	int[] output;     // pattern id ending on this node or -1
+	int[] outputLink; // next node of the failure chain having an output or -1
+	int nodeCount = 0;
+
+	int[] rootAscii = new int[128]; // direct root transitions for the ascii chars
+
+	public FunctionMatcher( SymbolTable symbols, boolean wholeIdentifiers ) {
+
+		this.symbols = symbols;
+		this.wholeIdentifiers = wholeIdentifiers;
+		patternCount = symbols.size();
+
+		// a name has a single global function
+
+		int globalCount = 0;
+		globalOfName = new int[patternCount];
+		Arrays.fill( globalOfName, -1 );
+
+		for( int id = 0 ; id < patternCount ; id++ ) {
+			if( symbols.isStatic[id] == false ) {
+				globalOfName[symbols.firstIds[id]] = id;
+				globalCount++;
+			}
+		}
+
+		globalSlots = newSlots( globalCount );
+		for( int id = 0 ; id < patternCount ; id++ ) {
+			if( symbols.isStatic[id] == false ) {
+				insert( globalSlots, id );
+			}
+		}
+
+		int capacity = 1; // chars of the names matched as substrings
+		for( int patternId = 0 ; patternId < patternCount ; patternId++ ) {
+			if( isSubstringPattern( patternId ) ) {
+				capacity += symbols.nameEnd( patternId ) - symbols.nameStart( patternId );
+			}
+		}
+
+		withAutomaton = ( capacity > 1 );
+		if( withAutomaton == false ) {
+			return;
+		}
+
+		firstChild  = new int[capacity];
+		nextSibling = new int[capacity];
+		label       = new char[capacity];
+		fail        = new int[capacity];
+		output      = new int[capacity];
+		outputLink  = new int[capacity];
+
+		newNode( (char)0 ); // root
+
+		// build the trie
+
+		for( int patternId = 0 ; patternId < patternCount ; patternId++ ) {
+
+			if( isSubstringPattern( patternId ) == false ) {
+				continue;
+			}
+
+			int node = 0;
+
+			for( int chpos = symbols.nameStart( patternId ) ; chpos < symbols.nameEnd( patternId ) ; chpos++ ) {
+
+				char ch = symbols.pool[chpos];
+				int child = child( node, ch );
+
+				if( child == -1 ) {
+					child = newNode( ch );
+					nextSibling[child] = firstChild[node];
+					firstChild[node] = child;
+					if( node == 0 && ch < 128 ) {
+						rootAscii[ch] = child;
+					}
+				}
+				node = child;
+			}
+
+			output[node] = patternId;
+		}
+
+		// compute failure links (breadth first)
+
+		int[] queue = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+
+		for( int child = firstChild[0] ; child != -1 ; child = nextSibling[child] ) {
+			fail[child] = 0;
+			outputLink[child] = -1;
+			queue[tail++] = child;
+		}
+
+		while( head < tail ) {
+
+			int node = queue[head++];
+
+			for( int child = firstChild[node] ; child != -1 ; child = nextSibling[child] ) {
+
+				char ch = label[child];
+				int f = fail[node];
+
+				while( f != 0 && child( f, ch ) == -1 ) {
+					f = fail[f];
+				}
+
+				int target = child( f, ch );
+				fail[child] = ( target == -1 ) ? 0 : target;
+				outputLink[child] = ( output[fail[child]] != -1 ) ? fail[child] : outputLink[fail[child]];
+
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	// ------- names -------------
+
+	static int[] newSlots( int count ) {
+		return new int[Integer.highestOneBit( Math.max( 1, count )) * 4]; // at most half full
+	}
+
+	void insert( int[] slots, int id ) {
+
+		int mask = slots.length - 1;
+		int slot = SymbolTable.home( symbols.hashes[id], slots.length );
+
+		while( slots[slot] != 0 ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		slots[slot] = id + 1;
+	}
+
+	// id of the symbol of the name text[start,end) (of hash h) into the slots or -1
+
+	int find( int[] slots, int h, char[] text, int start, int end ) {
+
+		int mask = slots.length - 1;
+
+		for( int slot = SymbolTable.home( h, slots.length ) ; slots[slot] != 0 ; slot = ( slot + 1 ) & mask ) {
+
+			int id = slots[slot] - 1;
+			if( symbols.hashes[id] == h && Arrays.equals( symbols.pool, symbols.nameStarts[id], symbols.nameStarts[id + 1], text, start, end ) ) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	// overlay of the given static functions (sorted ids, null : none), the first declared one of a name hides the next ones
+
+	public Overlay overlay( int[] staticIds ) {
+
+		if( staticIds == null || staticIds.length == 0 ) {
+			return null;
+		}
+
+		Overlay overlay = new Overlay();
+		overlay.slots = newSlots( staticIds.length );
+
+		for( int id : staticIds ) {
+			if( find( overlay.slots, symbols.hashes[id], symbols.pool, symbols.nameStart( id ), symbols.nameEnd( id )) == -1 ) {
+				insert( overlay.slots, id );
+			}
+		}
+		return overlay;
+	}
+
+	// symbol of the name of a pattern seen through the overlay (null : globals only), -1 when none
+
+	int resolve( int patternId, Overlay overlay ) {
+
+		int id = ( overlay != null ) ? find( overlay.slots, symbols.hashes[patternId], symbols.pool, symbols.nameStart( patternId ), symbols.nameEnd( patternId )) : -1;
+		return ( id != -1 ) ? id : globalOfName[patternId];
+	}
+
+	// ------- automaton -------------
+
+	int newNode( char ch ) {
+
+		int node = nodeCount++;
+		firstChild[node] = -1;
+		nextSibling[node] = -1;
+		label[node] = ch;
+		output[node] = -1;
+		outputLink[node] = -1;
+		return node;
+	}
+
+	int child( int node, char ch ) {
+
+		if( node == 0 && ch < 128 ) {
+			int child = rootAscii[ch];
+			return ( child == 0 ) ? -1 : child;
+		}
+
+		for( int child = firstChild[node] ; child != -1 ; child = nextSibling[child] ) {
+			if( label[child] == ch ) {
+				return child;
+			}
+		}
+		return -1;
+	}
+
+	boolean isSubstringPattern( int patternId ) {
+
+		if( symbols.isFirstOfName( patternId ) == false ) {
+			return false; // a name is found once, its symbols are chained from the first one
+		}
+
+		if( wholeIdentifiers == false ) {
+			return true;
+		}
+
+		int nameStart = symbols.nameStart( patternId );
+		int nameEnd = symbols.nameEnd( patternId );
+
+		if( nameStart == nameEnd || isIdentifierStart( symbols.pool[nameStart] ) == false ) {
+			return true;
+		}
+		for( int chpos = nameStart ; chpos < nameEnd ; chpos++ ) {
+			if( isIdentifierPart( symbols.pool[chpos] ) == false ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ------- scan -------------
+
+	// find all the function names present into the line text[start,end), each one is reported once,
+	// as the symbol seen through the overlay of the file (null : globals only)
+
+	public void scan( char[] text, int start, int end, LineScan ls, Overlay overlay ) {
+
+		ls.hitCount = 0;
+		ls.stamp++;
+
+		if( wholeIdentifiers ) {
+			scanIdentifiers( text, start, end, ls, overlay );
+		}
+		if( withAutomaton ) {
+			scanSubstrings( text, start, end, ls, overlay );
+		}
+	}
+
+	static boolean isIdentifierStart( char ch ) {
+		return ( ch >= 'a' && ch <= 'z' ) || ( ch >= 'A' && ch <= 'Z' ) || ch == '_';
+	}
+
+	static boolean isIdentifierPart( char ch ) {
+		return isIdentifierStart( ch ) || ( ch >= '0' && ch <= '9' );
+	}
+
+	void scanIdentifiers( char[] text, int start, int end, LineScan ls, Overlay overlay ) {
+
+		int chpos = start;
+
+		while( chpos < end ) {
+
+			char ch = text[chpos];
+
+			if( isIdentifierPart( ch ) == false ) {
+				chpos++;
+				continue;
+			}
+
+			int tokenStart = chpos++;
+			while( chpos < end && isIdentifierPart( text[chpos] ) ) {
+				chpos++;
+			}
+
+			if( isIdentifierStart( ch ) == false ) {
+				continue; // a number (with its suffix)
+			}
+
+			int h = SymbolTable.hash( text, tokenStart, chpos );
+			int id = ( overlay != null ) ? find( overlay.slots, h, text, tokenStart, chpos ) : -1;
+			if( id == -1 ) {
+				id = find( globalSlots, h, text, tokenStart, chpos );
+			}
+
+			if( id != -1 && ls.seen[id] != ls.stamp ) {
+				ls.seen[id] = ls.stamp;
+				ls.hitEnds[ls.hitCount] = chpos;
+				ls.hits[ls.hitCount++] = id;
+			}
+		}
+	}
+
+	void scanSubstrings( char[] text, int start, int end, LineScan ls, Overlay overlay ) {
+
+		int state = 0;
+
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+
+			char ch = text[chpos];
+			int next = child( state, ch );
+
+			while( next == -1 && state != 0 ) {
+				state = fail[state];
+				next = child( state, ch );
+			}
+
+			state = ( next == -1 ) ? 0 : next;
+
+			for( int node = ( output[state] != -1 ) ? state : outputLink[state] ; node != -1 ; node = outputLink[node] ) {
+
+				int id = resolve( output[node], overlay );
+				if( id != -1 && ls.seen[id] != ls.stamp ) {
+					ls.seen[id] = ls.stamp;
+					ls.hitEnds[ls.hitCount] = chpos + 1;
+					ls.hits[ls.hitCount++] = id;
+				}
+			}
+		}
+	}
+}
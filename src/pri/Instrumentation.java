@@ -0,0 +1,190 @@
+package pri;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+import pri.Reporter.Level;
+
+// per phase measures of a run (wall time, files/lines/bytes, throughput, allocation, heap peak) summarized into the log,
+// and the same as JFR events (one per phase, one per file slower than the threshold) when a recording is running
+//
+// the allocation is the one of the thread running the phase plus the one of the census workers (see FileParser.runWorkers),
+// the heap peak is the sum of the peaks of the heap pools during the phase (an upper bound)
+
+public class Instrumentation {
+
+	@Name( "pri.Phase" )
+	@Label( "CodeCheck phase" )
+	@Category( "CodeCheck" )
+	static class PhaseEvent extends Event {
+
+		@Label( "Phase" ) String phase;
+		@Label( "Files" ) long files;
+		@Label( "Lines" ) long lines;
+		@Label( "Bytes" ) @DataAmount long bytes;
+		@Label( "Allocated" ) @DataAmount long allocated;
+	}
+
+	@Name( "pri.SlowFile" )
+	@Label( "CodeCheck slow file" )
+	@Category( "CodeCheck" )
+	@Threshold( "20 ms" )
+	static class SlowFileEvent extends Event {
+
+		@Label( "Phase" ) String phase;
+		@Label( "Path" ) String path;
+		@Label( "Lines" ) long lines;
+		@Label( "Bytes" ) @DataAmount long bytes;
+	}
+
+	public class Phase {
+
+		public String name;
+		public long files = 0;
+		public long lines = 0;
+		public long bytes = 0;
+
+		long startNanos;
+		long wallNanos;
+		long allocatedStart;
+		long workersAllocatedStart;
+		long allocated;
+		long heapPeak;
+		PhaseEvent event = new PhaseEvent();
+	}
+
+	class SlowFile {
+
+		String phase;
+		String path;
+		long nanos;
+	}
+
+	public long slowFileMillis = 100; // files slower than that are listed into the summary
+
+	List<Phase> phases = new ArrayList<Phase>();
+	ConcurrentLinkedQueue<SlowFile> slowFiles = new ConcurrentLinkedQueue<SlowFile>();
+	AtomicLong workersAllocated = new AtomicLong( 0 );
+
+	com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public Phase begin( String name ) {
+
+		Phase phase = new Phase();
+		phase.name = name;
+
+		for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+			if( pool.getType() == MemoryType.HEAP ) {
+				pool.resetPeakUsage();
+			}
+		}
+
+		phase.allocatedStart = threads.getCurrentThreadAllocatedBytes();
+		phase.workersAllocatedStart = workersAllocated.get();
+		phase.event.begin();
+		phase.startNanos = System.nanoTime();
+
+		phases.add( phase );
+		return phase;
+	}
+
+	public void end( Phase phase ) {
+
+		phase.wallNanos = System.nanoTime() - phase.startNanos;
+		phase.allocated = threads.getCurrentThreadAllocatedBytes() - phase.allocatedStart + workersAllocated.get() - phase.workersAllocatedStart;
+
+		for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+			if( pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null ) {
+				phase.heapPeak += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		phase.event.end();
+		if( phase.event.shouldCommit() ) {
+			phase.event.phase = phase.name;
+			phase.event.files = phase.files;
+			phase.event.lines = phase.lines;
+			phase.event.bytes = phase.bytes;
+			phase.event.allocated = phase.allocated;
+			phase.event.commit();
+		}
+	}
+
+	// ------- per file -------------
+
+	public SlowFileEvent beginFile() {
+
+		SlowFileEvent event = new SlowFileEvent();
+		event.begin();
+		return event;
+	}
+
+	public void endFile( SlowFileEvent event, String phase, String path, long lines, long bytes, long nanos ) {
+
+		event.end();
+		if( event.shouldCommit() ) {
+			event.phase = phase;
+			event.path = path;
+			event.lines = lines;
+			event.bytes = bytes;
+			event.commit();
+		}
+
+		if( nanos >= slowFileMillis * 1_000_000L ) {
+			SlowFile slowFile = new SlowFile();
+			slowFile.phase = phase;
+			slowFile.path = path;
+			slowFile.nanos = nanos;
+			slowFiles.add( slowFile );
+		}
+	}
+
+	// allocation of a worker thread, added at its end
+
+	public long threadAllocated() {
+		return threads.getCurrentThreadAllocatedBytes();
+	}
+
+	public void addWorkerAllocated( long allocated ) {
+		workersAllocated.addAndGet( allocated );
+	}
+
+	// ------- summary -------------
+
+	public void summarize( Reporter reporter ) {
+
+		reporter.log( Level.RESULT, " ==================================================== phases\n" );
+		reporter.log( Level.RESULT, " %-26s %9s %8s %10s %9s %11s %8s %10s %13s\n", "phase", "wall ms", "files", "lines", "MB", "lines/s", "MB/s", "alloc MB", "heap peak MB" );
+
+		for( Phase phase : phases ) {
+
+			double seconds = Math.max( phase.wallNanos, 1 ) / 1e9;
+			double mb = phase.bytes / (double)( 1 << 20 );
+
+			reporter.log( Level.RESULT, " %-26s %9.1f %8d %10d %9.1f %11.0f %8.1f %10.1f %13.1f\n",
+				phase.name, phase.wallNanos / 1e6, phase.files, phase.lines, mb, phase.lines / seconds, mb / seconds,
+				phase.allocated / (double)( 1 << 20 ), phase.heapPeak / (double)( 1 << 20 ));
+		}
+
+		List<SlowFile> slowest = new ArrayList<SlowFile>( slowFiles );
+		slowest.sort( ( slowFile1, slowFile2 ) -> Long.compare( slowFile2.nanos, slowFile1.nanos ));
+
+		for( int index = 0 ; index < Math.min( 20, slowest.size() ) ; index++ ) {
+
+			SlowFile slowFile = slowest.get( index );
+			reporter.log( Level.RESULT, " slow file (%s) %.1f ms : %s\n", slowFile.phase, slowFile.nanos / 1e6, slowFile.path );
+		}
+	}
+}
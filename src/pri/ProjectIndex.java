@@ -0,0 +1,108 @@
+package pri;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// references of the project files (makefiles and vcxproj), each project file is read once
+// a source is referenced when its object file <basename>.o is listed by a makefile or when a vcxproj includes it
+
+public class ProjectIndex {
+
+	Set<String> objectNames = new HashSet<String>();   // <name>.o found into the makefiles
+	Set<String> includedFiles = new HashSet<String>(); // file names of the Include="..." entries of the vcxproj
+
+	public ProjectIndex( List<FileTable.FileItem> projectFiles ) throws IOException {
+
+		for( FileTable.FileItem projFileItem : projectFiles ) {
+
+			boolean isMakefile = projFileItem.name.equalsIgnoreCase( "makefile" );
+
+			try( BufferedReader reader = new BufferedReader( new FileReader( projFileItem.fullpath )) )
+			{
+				while( true ) {
+
+					String line = reader.readLine();
+					if( line == null ) { break; }
+
+					if( isMakefile ) {
+						addObjectNames( line );
+					}
+					else {
+						addIncludedFiles( line );
+					}
+				}
+			}
+		}
+	}
+
+	public boolean isReferenced( FileTable.FileItem srcFileItem ) {
+
+		return objectNames.contains( srcFileItem.basename() + ".o" ) || includedFiles.contains( srcFileItem.name );
+	}
+
+	static boolean isFileNameChar( char ch ) {
+
+		if( Character.isWhitespace( ch ) ) {
+			return false;
+		}
+
+		switch( ch ) {
+			case '/': case '\\': case '(': case ')': case '$': case '=': case ':': case ';':
+			case ',': case '"': case '\'': case '{': case '}': case '<': case '>': case '|': case '*':
+				return false;
+			default:
+				return true;
+		}
+	}
+
+	void addObjectNames( String line ) {
+
+		// e.g. : $(OBJDIR)/name.o \
+
+		int chpos = line.indexOf( ".o" );
+
+		while( chpos != -1 ) {
+
+			int end = chpos + 2;
+
+			if( end == line.length() || isFileNameChar( line.charAt( end )) == false ) {
+
+				int start = chpos;
+				while( start > 0 && isFileNameChar( line.charAt( start - 1 )) ) {
+					start--;
+				}
+
+				if( start < chpos ) {
+					objectNames.add( line.substring( start, end ) );
+				}
+			}
+
+			chpos = line.indexOf( ".o", end );
+		}
+	}
+
+	void addIncludedFiles( String line ) {
+
+		// e.g. : <ClCompile Include="..\..\C\calculs\name.c" />
+
+		int chpos = line.indexOf( "Include=\"" );
+
+		while( chpos != -1 ) {
+
+			int start = chpos + "Include=\"".length();
+			int end = line.indexOf( '"', start );
+			if( end == -1 ) {
+				break;
+			}
+
+			int nameStart = Math.max( line.lastIndexOf( '\\', end - 1 ), line.lastIndexOf( '/', end - 1 ) ) + 1;
+			includedFiles.add( line.substring( Math.max( start, nameStart ), end ) );
+
+			chpos = line.indexOf( "Include=\"", end );
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package pri;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// output of the checks : the records are queued by the callers and written by a single daemon thread,
+// by batches, to the console and/or the log file, thus the parsing never waits for the terminal
+// the records keep the order in which they were queued, whatever the sink they go to
+// each record is formatted once (by the writing thread), only when its level is enabled for one of its sinks
+
+public class Reporter {
+
+	public enum Level {
+
+		RESULT,   // findings and totals
+		WARNING,  // suspicious content, ignored cache ...
+		PROGRESS, // files and folders being processed
+		DETAIL    // every declaration, every project file
+	}
+
+	public Level consoleLevel = Level.DETAIL; // most detailed level written to the console
+	public Level fileLevel = Level.DETAIL;    // most detailed level written to the log file
+
+	class Record {
+
+		String format;
+		Object[] args;
+		boolean toConsole;
+		boolean toFile;
+		CountDownLatch flushed; // not null for a flush request
+	}
+
+	PrintStream console;
+	Writer file; // null : console only
+
+	BlockingQueue<Record> queue = new ArrayBlockingQueue<Record>( 1 << 16 ); // bounded : a caller only waits when far ahead of the sinks
+	Thread sinkThread = null;
+	volatile IOException failure = null; // first error of the log file (or end of the writing thread), thrown back by flush()
+
+	public Reporter( PrintStream console, Writer file ) {
+
+		this.console = console;
+		this.file = file;
+	}
+
+	public boolean isEnabled( Level level, boolean toConsole, boolean toFile ) {
+
+		return ( toConsole && level.compareTo( consoleLevel ) <= 0 ) || ( toFile && file != null && level.compareTo( fileLevel ) <= 0 );
+	}
+
+	public void console( Level level, String format, Object... args ) {
+		report( level, true, false, format, args );
+	}
+
+	public void log( Level level, String format, Object... args ) {
+		report( level, false, true, format, args );
+	}
+
+	public void both( Level level, String format, Object... args ) {
+		report( level, true, true, format, args );
+	}
+
+	void report( Level level, boolean toConsole, boolean toFile, String format, Object[] args ) {
+
+		Record record = new Record();
+		record.toConsole = toConsole && level.compareTo( consoleLevel ) <= 0;
+		record.toFile = toFile && file != null && level.compareTo( fileLevel ) <= 0;
+
+		if( record.toConsole == false && record.toFile == false ) {
+			return;
+		}
+
+		record.format = format;
+		record.args = args;
+		enqueue( record );
+	}
+
+	void enqueue( Record record ) {
+
+		synchronized( this ) {
+			if( sinkThread == null ) {
+				sinkThread = new Thread( this::drain, "reporter" );
+				sinkThread.setDaemon( true );
+				sinkThread.start();
+			}
+		}
+
+		// a writing thread which ended would never make room : the record is dropped (the failure thrown back by flush)
+
+		if( queue.remainingCapacity() == 0 && isSinkAlive() == false ) {
+			return;
+		}
+
+		try {
+			while( queue.offer( record, 100, TimeUnit.MILLISECONDS ) == false ) {
+				if( isSinkAlive() == false ) {
+					return;
+				}
+			}
+		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	boolean isSinkAlive() {
+
+		if( sinkThread.isAlive() ) {
+			return true;
+		}
+		if( failure == null ) {
+			failure = new IOException( "reporter writing thread ended" );
+		}
+		return false;
+	}
+
+	// wait until all the records queued so far are written (and the sinks flushed)
+
+	public void flush() throws IOException {
+
+		Record record = new Record();
+		record.flushed = new CountDownLatch( 1 );
+		enqueue( record );
+
+		try {
+			while( record.flushed.await( 100, TimeUnit.MILLISECONDS ) == false ) {
+				if( isSinkAlive() == false ) {
+					break;
+				}
+			}
+		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IOException( e );
+		}
+
+		if( failure != null ) {
+			throw failure;
+		}
+	}
+
+	// ------- writing thread -------------
+
+	void drain() {
+
+		try {
+			drainRecords();
+		}
+		catch( RuntimeException | Error e ) {
+			if( failure == null ) {
+				failure = new IOException( "reporter writing thread failed", e );
+			}
+			throw e;
+		}
+	}
+
+	void drainRecords() {
+
+		List<Record> batch = new ArrayList<Record>();
+		StringBuilder consoleText = new StringBuilder();
+		StringBuilder fileText = new StringBuilder();
+
+		while( true ) {
+
+			try {
+				batch.add( queue.take() );
+			}
+			catch( InterruptedException e ) {
+				return;
+			}
+			queue.drainTo( batch );
+
+			for( Record record : batch ) {
+
+				if( record.flushed != null ) {
+
+					write( consoleText, fileText, true );
+					record.flushed.countDown();
+					continue;
+				}
+
+				String text;
+				try {
+					text = ( record.args.length == 0 ) ? record.format : String.format( record.format, record.args );
+				}
+				catch( RuntimeException e ) {
+					// bad format or argument : written raw, the other records still are
+					text = record.format.stripTrailing() + " <- " + e + "\n";
+				}
+
+				if( record.toConsole ) {
+					consoleText.append( text );
+				}
+				if( record.toFile ) {
+					fileText.append( text );
+				}
+			}
+
+			batch.clear();
+			write( consoleText, fileText, false );
+		}
+	}
+
+	void write( StringBuilder consoleText, StringBuilder fileText, boolean flush ) {
+
+		if( consoleText.length() > 0 ) {
+			console.append( consoleText );
+			consoleText.setLength( 0 );
+		}
+		if( flush ) {
+			console.flush();
+		}
+
+		if( file == null || failure != null ) {
+			fileText.setLength( 0 );
+			return;
+		}
+
+		try {
+			if( fileText.length() > 0 ) {
+				file.append( fileText );
+				fileText.setLength( 0 );
+			}
+			if( flush ) {
+				file.flush();
+			}
+		}
+		catch( IOException e ) {
+			failure = e;
+			fileText.setLength( 0 );
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package pri;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+// binary snapshot of the result of the functions check, written at the end of a run for the tools working on the results (queries, diffs)
+// it is read back by mapping the file : the sections are used in place as int and char buffers, nothing is parsed nor decoded
+//
+// layout (big endian, every section aligned on 4 bytes, the char sections padded to an even length) :
+//   header      HEADER_INTS ints (format, counts, totals)
+//   strings     starts (stringCount + 1 ints) then chars : the types, then the full paths of the files (the file table order)
+//   files       by file id, int columns : offset of the path from "prog", kind (FileTable.Ext), lines, code lines (0 : out of the census)
+//   symbols     name starts (symbolCount + 1 ints) then name chars, then by symbol id, int columns :
+//               name hash, type, file id, declaration line, use count, flags, next symbol of the same name (-1 : none)
+//   slots       open addressing table of the names (id + 1, 0 : free), probed as SymbolTable does
+
+public class ResultSnapshot {
+
+	static final int MAGIC = 0x4343534E; // "CCSN"
+	static final int VERSION = 2; // 2 : home slots of SymbolTable.home
+	static final int HEADER_INTS = 16;
+
+	public static final int STATIC = 1;       // file local linkage
+	public static final int REACHABLE = 2;    // reachable from the roots (all the functions when no call graph)
+	public static final int UNREFERENCED = 4; // reported as unreferenced
+	public static final int UNREACHABLE = 8;  // reported as unreachable
+
+	ByteBuffer buffer; // whole file, mapped
+
+	public int fileCount;
+	public int symbolCount;
+	int typeCount;
+	int slotCount;
+
+	// totals of the run
+	public int sourceLineCount;
+	public int pcFilesSourceLineCount;
+	public int cppFilesSourceLineCount;
+	public int unreferencedCount;
+	public int unreachableCount;
+
+	IntBuffer stringStarts;
+	CharBuffer strings;
+	IntBuffer progPathStarts;
+	IntBuffer fileKinds;
+	IntBuffer fileLineCounts;
+	IntBuffer fileSourceLineCounts;
+	IntBuffer nameStarts;
+	CharBuffer names;
+	IntBuffer hashes;
+	IntBuffer typeIds;
+	IntBuffer fileIds;
+	IntBuffer lineNums;
+	IntBuffer useCounts;
+	IntBuffer flags;
+	IntBuffer nextSameName;
+	IntBuffer slots;
+
+	// ------- writing -------------
+
+	// the findings are the symbol ids reported (see CodeCheck.unreferencedFunctions), reached the reachable ones
+
+	public static void write( String snapshotPath, FileParser.Result r, FileTable table, BitSet reached, List<Integer> findings ) throws IOException {
+
+		SymbolTable symbols = r.symbols;
+		int[] symbolFlags = new int[symbols.size()];
+		int unreferencedCount = 0;
+
+		for( int symbolId = 0 ; symbolId < symbols.size() ; symbolId++ ) {
+			symbolFlags[symbolId] = ( symbols.isStatic[symbolId] ? STATIC : 0 ) | ( reached.get( symbolId ) ? REACHABLE : 0 );
+		}
+		for( int symbolId : findings ) {
+			boolean unreferenced = ( symbols.useCounts[symbolId] == 0 );
+			symbolFlags[symbolId] |= unreferenced ? UNREFERENCED : UNREACHABLE;
+			unreferencedCount += unreferenced ? 1 : 0;
+		}
+
+		// the strings : types then paths
+
+		int stringCount = symbols.types.size() + table.size();
+		int[] stringStarts = new int[stringCount + 1];
+		StringBuilder strings = new StringBuilder();
+
+		for( int stringId = 0 ; stringId < stringCount ; stringId++ ) {
+			stringStarts[stringId] = strings.length();
+			strings.append( ( stringId < symbols.types.size() ) ? symbols.types.get( stringId ) : table.get( stringId - symbols.types.size() ).fullpath );
+		}
+		stringStarts[stringCount] = strings.length();
+
+		int fileCount = table.size();
+		int symbolCount = symbols.size();
+
+		long size = HEADER_INTS * 4L + ( stringCount + 1 ) * 4L + padded( strings.length() ) + fileCount * 16L
+			+ ( symbolCount + 1 ) * 4L + padded( symbols.poolLength ) + symbolCount * 28L + symbols.slots.length * 4L;
+
+		ByteBuffer out = ByteBuffer.allocate( Math.toIntExact( size ));
+
+		// header
+
+		out.putInt( MAGIC );
+		out.putInt( VERSION );
+		out.putInt( fileCount );
+		out.putInt( symbolCount );
+		out.putInt( symbols.types.size() );
+		out.putInt( stringCount );
+		out.putInt( strings.length() );
+		out.putInt( symbols.poolLength );
+		out.putInt( symbols.slots.length );
+		out.putInt( r.sourceLineCount );
+		out.putInt( r.pcFilesSourceLineCount );
+		out.putInt( r.cppFilesSourceLineCount );
+		out.putInt( unreferencedCount );
+		out.putInt( findings.size() - unreferencedCount );
+		out.position( HEADER_INTS * 4 );
+
+		// strings
+
+		putInts( out, stringStarts, stringCount + 1 );
+		for( int chpos = 0 ; chpos < strings.length() ; chpos++ ) {
+			out.putChar( strings.charAt( chpos ));
+		}
+		pad( out, strings.length() );
+
+		// files
+
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			FileTable.FileItem fileItem = table.get( fileId );
+			out.putInt( fileItem.fullpath.length() - fileItem.progPath().length() );
+		}
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			out.putInt( table.get( fileId ).kind().ordinal() );
+		}
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			out.putInt( ( fileId < r.lineCountsOfFiles.length ) ? r.lineCountsOfFiles[fileId] : 0 );
+		}
+		for( int fileId = 0 ; fileId < fileCount ; fileId++ ) {
+			out.putInt( ( fileId < r.sourceLineCountsOfFiles.length ) ? r.sourceLineCountsOfFiles[fileId] : 0 );
+		}
+
+		// symbols, the columns of the symbol table as they are
+
+		putInts( out, symbols.nameStarts, symbolCount + 1 );
+		out.asCharBuffer().put( symbols.pool, 0, symbols.poolLength );
+		out.position( out.position() + symbols.poolLength * 2 );
+		pad( out, symbols.poolLength );
+
+		putInts( out, symbols.hashes, symbolCount );
+		putInts( out, symbols.typeIds, symbolCount );
+		putInts( out, symbols.fileIds, symbolCount );
+		putInts( out, symbols.lineNums, symbolCount );
+		putInts( out, symbols.useCounts, symbolCount );
+		putInts( out, symbolFlags, symbolCount );
+		putInts( out, symbols.nextSameName, symbolCount );
+		putInts( out, symbols.slots, symbols.slots.length );
+
+		// written aside then moved, a reader never maps a partial snapshot
+
+		Path target = Paths.get( snapshotPath );
+		Path temp = Paths.get( snapshotPath + ".tmp" );
+
+		Files.write( temp, out.array() );
+		Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+	}
+
+	static void putInts( ByteBuffer out, int[] values, int count ) {
+
+		out.asIntBuffer().put( values, 0, count );
+		out.position( out.position() + count * 4 );
+	}
+
+	static void pad( ByteBuffer out, int charCount ) {
+
+		if( charCount % 2 != 0 ) {
+			out.putChar( (char)0 );
+		}
+	}
+
+	// ------- reading -------------
+
+	public static ResultSnapshot open( String snapshotPath ) throws IOException {
+
+		ResultSnapshot snapshot = new ResultSnapshot();
+
+		try( FileChannel channel = FileChannel.open( Paths.get( snapshotPath ), StandardOpenOption.READ ) ) {
+			snapshot.buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ); // stays valid once the channel closed
+		}
+
+		snapshot.map( snapshotPath );
+		return snapshot;
+	}
+
+	void map( String snapshotPath ) throws IOException {
+
+		IntBuffer header = buffer.asIntBuffer();
+
+		if( buffer.capacity() < HEADER_INTS * 4 || header.get( 0 ) != MAGIC || header.get( 1 ) != VERSION ) {
+			throw new IOException( "not a snapshot of this version : " + snapshotPath );
+		}
+
+		fileCount = header.get( 2 );
+		symbolCount = header.get( 3 );
+		typeCount = header.get( 4 );
+		int stringCount = header.get( 5 );
+		int stringsLength = header.get( 6 );
+		int namesLength = header.get( 7 );
+		slotCount = header.get( 8 );
+		sourceLineCount = header.get( 9 );
+		pcFilesSourceLineCount = header.get( 10 );
+		cppFilesSourceLineCount = header.get( 11 );
+		unreferencedCount = header.get( 12 );
+		unreachableCount = header.get( 13 );
+
+		// the sections follow each other, their offsets come from the counts
+
+		int offset = HEADER_INTS * 4;
+
+		stringStarts = ints( offset, stringCount + 1 );          offset += ( stringCount + 1 ) * 4;
+		strings = chars( offset, stringsLength );                offset += padded( stringsLength );
+		progPathStarts = ints( offset, fileCount );              offset += fileCount * 4;
+		fileKinds = ints( offset, fileCount );                   offset += fileCount * 4;
+		fileLineCounts = ints( offset, fileCount );              offset += fileCount * 4;
+		fileSourceLineCounts = ints( offset, fileCount );        offset += fileCount * 4;
+		nameStarts = ints( offset, symbolCount + 1 );            offset += ( symbolCount + 1 ) * 4;
+		names = chars( offset, namesLength );                    offset += padded( namesLength );
+		hashes = ints( offset, symbolCount );                    offset += symbolCount * 4;
+		typeIds = ints( offset, symbolCount );                   offset += symbolCount * 4;
+		fileIds = ints( offset, symbolCount );                   offset += symbolCount * 4;
+		lineNums = ints( offset, symbolCount );                  offset += symbolCount * 4;
+		useCounts = ints( offset, symbolCount );                 offset += symbolCount * 4;
+		flags = ints( offset, symbolCount );                     offset += symbolCount * 4;
+		nextSameName = ints( offset, symbolCount );              offset += symbolCount * 4;
+		slots = ints( offset, slotCount );                       offset += slotCount * 4;
+
+		if( offset != buffer.capacity() ) {
+			throw new IOException( "truncated or damaged snapshot : " + snapshotPath );
+		}
+	}
+
+	IntBuffer ints( int offset, int count ) throws IOException {
+
+		if( offset + (long)count * 4 > buffer.capacity() ) {
+			throw new IOException( "truncated snapshot" );
+		}
+		return buffer.slice( offset, count * 4 ).asIntBuffer();
+	}
+
+	CharBuffer chars( int offset, int count ) throws IOException {
+
+		if( offset + (long)count * 2 > buffer.capacity() ) {
+			throw new IOException( "truncated snapshot" );
+		}
+		return buffer.slice( offset, count * 2 ).asCharBuffer();
+	}
+
+	static int padded( int charCount ) {
+		return ( charCount + ( charCount % 2 )) * 2;
+	}
+
+	String string( int stringId ) {
+
+		int start = stringStarts.get( stringId );
+		return strings.subSequence( start, stringStarts.get( stringId + 1 )).toString();
+	}
+
+	// ------- files -------------
+
+	public String fullpath( int fileId ) {
+		return string( typeCount + fileId );
+	}
+
+	public String progPath( int fileId ) {
+		return fullpath( fileId ).substring( progPathStarts.get( fileId ));
+	}
+
+	public FileTable.Ext kind( int fileId ) {
+		return FileTable.Ext.values()[ fileKinds.get( fileId ) ];
+	}
+
+	public int lineCount( int fileId ) {
+		return fileLineCounts.get( fileId );
+	}
+
+	public int sourceLineCount( int fileId ) {
+		return fileSourceLineCounts.get( fileId );
+	}
+
+	// ------- symbols -------------
+
+	public String name( int symbolId ) {
+		return names.subSequence( nameStarts.get( symbolId ), nameStarts.get( symbolId + 1 )).toString();
+	}
+
+	public String type( int symbolId ) {
+		return string( typeIds.get( symbolId ));
+	}
+
+	public int fileId( int symbolId ) {
+		return fileIds.get( symbolId );
+	}
+
+	public int lineNum( int symbolId ) {
+		return lineNums.get( symbolId );
+	}
+
+	public int useCount( int symbolId ) {
+		return useCounts.get( symbolId );
+	}
+
+	public boolean is( int symbolId, int flag ) {
+		return ( flags.get( symbolId ) & flag ) != 0;
+	}
+
+	public int nextSameName( int symbolId ) {
+		return nextSameName.get( symbolId );
+	}
+
+	// id of the first symbol of the name or -1 (the other ones by nextSameName), without building any string
+
+	public int find( CharSequence name ) {
+
+		int h = SymbolTable.hash( name, 0, name.length() );
+		int mask = slotCount - 1;
+
+		for( int slot = SymbolTable.home( h, slotCount ) ; slots.get( slot ) != 0 ; slot = ( slot + 1 ) & mask ) {
+
+			int symbolId = slots.get( slot ) - 1;
+			if( hashes.get( symbolId ) == h && nameEquals( symbolId, name ) ) {
+				return symbolId;
+			}
+		}
+		return -1;
+	}
+
+	boolean nameEquals( int symbolId, CharSequence name ) {
+
+		int nameStart = nameStarts.get( symbolId );
+
+		if( nameStarts.get( symbolId + 1 ) - nameStart != name.length() ) {
+			return false;
+		}
+		for( int chpos = 0 ; chpos < name.length() ; chpos++ ) {
+			if( names.get( nameStart + chpos ) != name.charAt( chpos ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,71 @@
+package pri;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// projects referenced by the solution files (.sln), each solution is read once
+// e.g. : Project("{8BC9CEB8-8B4A-11D0-8D11-00A0C91BC942}") = "name", "path\name.vcxproj", "{...}"
+
+public class SolutionIndex {
+
+	Set<String> projectFiles = new HashSet<String>(); // file names of the referenced vcxproj
+
+	public SolutionIndex( List<FileTable.FileItem> solutionFiles ) throws IOException {
+
+		for( FileTable.FileItem slnFileItem : solutionFiles ) {
+
+			try( BufferedReader reader = new BufferedReader( new FileReader( slnFileItem.fullpath )) )
+			{
+				while( true ) {
+
+					String line = reader.readLine();
+					if( line == null ) { break; }
+
+					if( line.startsWith( "Project(" ) == false ) {
+						continue;
+					}
+
+					addProject( line );
+				}
+			}
+		}
+	}
+
+	void addProject( String line ) {
+
+		int equalPos = line.indexOf( '=' );
+		if( equalPos == -1 ) {
+			return;
+		}
+
+		// quoted values following the = : name, path, guid
+
+		int start = line.indexOf( '"', equalPos );
+
+		while( start != -1 ) {
+
+			int end = line.indexOf( '"', start + 1 );
+			if( end == -1 ) {
+				break;
+			}
+
+			String value = line.substring( start + 1, end );
+
+			if( value.endsWith( ".vcxproj" ) ) {
+				int nameStart = Math.max( value.lastIndexOf( '\\' ), value.lastIndexOf( '/' ) ) + 1;
+				projectFiles.add( value.substring( nameStart ) );
+			}
+
+			start = line.indexOf( '"', end + 1 );
+		}
+	}
+
+	public boolean isReferenced( FileTable.FileItem vcxprojFileItem ) {
+
+		return projectFiles.contains( vcxprojFileItem.name );
+	}
+}
@@ -0,0 +1,194 @@
+package pri;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// reads a whole source file at once : bulk read into a reusable buffer (memory mapped for the big files),
+// decoded into a reusable char buffer and split into lines given as offsets (no String per line)
+// the buffers are reused from a file to the other, thus a reader is used by a single thread
+
+public class SourceReader {
+
+	public Charset charset = StandardCharsets.ISO_8859_1; // legacy C/PC sources are Latin-1
+	public int mapThreshold = 1 << 20; // files from this size are memory mapped
+
+	public ByteBuffer bytes = null; // raw content of the last loaded file
+
+	public char[] text = new char[1 << 16];
+	public int textLength = 0;
+
+	// lines (without their terminator) as text[lineStarts[i],lineEnds[i])
+	public int[] lineStarts = new int[1 << 12];
+	public int[] lineEnds = new int[1 << 12];
+	public int lineCount = 0;
+
+	ByteBuffer heapBuffer = ByteBuffer.allocate( 1 << 16 );
+	byte[] chunk = new byte[1 << 16]; // bulk copy of a mapped buffer, widened from there
+	CLexer lexer = null; // created on the first lex()
+
+	public SourceReader( Charset charset ) {
+		this.charset = charset;
+	}
+
+	// load then decode
+
+	public SourceReader read( String fullpath ) throws IOException {
+
+		load( fullpath );
+		decode();
+		return this;
+	}
+
+	// blank what is not code into a copy of the text (see CLexer)
+
+	public CLexer lex() {
+
+		if( lexer == null ) {
+			lexer = new CLexer();
+		}
+		lexer.lex( this );
+		return lexer;
+	}
+
+	public void load( String fullpath ) throws IOException {
+
+		try( FileChannel channel = FileChannel.open( Paths.get( fullpath ), StandardOpenOption.READ ) )
+		{
+			long size = channel.size();
+
+			if( size >= mapThreshold ) {
+				bytes = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+				return;
+			}
+
+			if( heapBuffer.capacity() < size ) {
+				heapBuffer = ByteBuffer.allocate( (int)Math.max( size, heapBuffer.capacity() * 2L ) );
+			}
+
+			heapBuffer.clear();
+			heapBuffer.limit( (int)size );
+
+			while( heapBuffer.hasRemaining() ) {
+				if( channel.read( heapBuffer ) == -1 ) {
+					break; // truncated meanwhile
+				}
+			}
+
+			heapBuffer.flip();
+			bytes = heapBuffer;
+		}
+	}
+
+	public void decode() throws IOException {
+
+		int size = bytes.remaining();
+
+		if( text.length < size ) {
+			text = new char[ Math.max( size, text.length * 2 ) ];
+		}
+
+		if( charset.equals( StandardCharsets.ISO_8859_1 ) ) {
+
+			// single byte fast path : each byte is its char
+
+			if( bytes.hasArray() ) {
+
+				byte[] array = bytes.array();
+				int offset = bytes.arrayOffset() + bytes.position();
+
+				for( int index = 0 ; index < size ; index++ ) {
+					text[index] = (char)( array[offset + index] & 0xff );
+				}
+			}
+			else {
+
+				// mapped : bulk copied chunk by chunk, then widened as above
+
+				int position = bytes.position();
+
+				for( int start = 0 ; start < size ; start += chunk.length ) {
+
+					int length = Math.min( chunk.length, size - start );
+					bytes.get( position + start, chunk, 0, length );
+
+					for( int index = 0 ; index < length ; index++ ) {
+						text[start + index] = (char)( chunk[index] & 0xff );
+					}
+				}
+			}
+
+			textLength = size;
+		}
+		else {
+
+			CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput( CodingErrorAction.REPLACE )
+				.onUnmappableCharacter( CodingErrorAction.REPLACE );
+
+			int maxLength = (int)Math.ceil( size * (double)decoder.maxCharsPerByte() ) + 1;
+			if( text.length < maxLength ) {
+				text = new char[ maxLength ];
+			}
+
+			CharBuffer out = CharBuffer.wrap( text );
+			decoder.decode( bytes.duplicate(), out, true );
+			decoder.flush( out );
+			textLength = out.position();
+		}
+
+		splitLines();
+	}
+
+	// same line breaking as BufferedReader.readLine() : \n, \r or \r\n
+
+	void splitLines() {
+
+		lineCount = 0;
+		int lineStart = 0;
+		int chpos = 0;
+
+		while( chpos < textLength ) {
+
+			char ch = text[chpos];
+
+			if( ch == '\n' || ch == '\r' ) {
+
+				addLine( lineStart, chpos );
+				chpos++;
+
+				if( ch == '\r' && chpos < textLength && text[chpos] == '\n' ) {
+					chpos++;
+				}
+				lineStart = chpos;
+			}
+			else {
+				chpos++;
+			}
+		}
+
+		if( lineStart < textLength ) {
+			addLine( lineStart, textLength ); // last line without terminator
+		}
+	}
+
+	void addLine( int start, int end ) {
+
+		if( lineCount == lineStarts.length ) {
+			lineStarts = Arrays.copyOf( lineStarts, lineCount * 2 );
+			lineEnds = Arrays.copyOf( lineEnds, lineCount * 2 );
+		}
+
+		lineStarts[lineCount] = start;
+		lineEnds[lineCount] = end;
+		lineCount++;
+	}
+}
@@ -0,0 +1,322 @@
+package pri;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FilenameUtils;
+
+import pri.FileTable.FileItem;
+import pri.Reporter.Level;
+
+// watch mode of the functions check : the index built by the census (incremental FileParser result) is kept in memory
+// and updated on the changes of the sources, seen through a WatchService on the folders of the walk (the new ones added on the fly)
+// the events are gathered until the tree is quiet for a while (an editor saves in several steps), then :
+//   a modified source declaring the same functions and includes : parsed again alone, its previous uses replaced (FileParser.updateFile)
+//   sources added or removed, declarations changed : the symbols merged again from the declarations kept in memory
+//     and the use census run again over the code kept in memory, only the new files read (FileParser.rebuild)
+// the findings which appeared (+) or disappeared (-) since the previous report are written, with the counts
+
+public class SourceWatcher {
+
+	public long quietMillis = 50; // the tree has no more events for that long before the changes are processed
+
+	String progFolder;
+	Path root;
+	FileTable table;
+	FileParser fp;
+	FileParser.Result r;
+	Reporter reporter;
+
+	List<FileItem> sources;  // all the sources of the tree, the Pro*C generated ones included
+	List<FileItem> useOnly;  // sources of the use census only (statis.h)
+	Map<String,FileItem> sourceOf = new HashMap<String,FileItem>(); // by full path, the use only ones too
+
+	Map<WatchKey,Path> folderOf = new HashMap<WatchKey,Path>();
+	List<String> findings = new ArrayList<String>(); // of the last report, in its order
+	boolean stale = false; // an update failed : the index is rebuilt from the files on the next change
+
+	public SourceWatcher( String progFolder, FileTable table, List<FileItem> sources, List<FileItem> useOnly, FileParser fp, FileParser.Result r, Reporter reporter ) {
+
+		this.progFolder = progFolder;
+		this.root = Paths.get( progFolder ).toAbsolutePath();
+		this.table = table;
+		this.sources = new ArrayList<FileItem>( sources );
+		this.useOnly = useOnly;
+		this.fp = fp;
+		this.r = r;
+		this.reporter = reporter;
+
+		for( FileItem fileItem : this.sources ) {
+			sourceOf.put( fileItem.fullpath, fileItem );
+		}
+		for( FileItem fileItem : useOnly ) {
+			sourceOf.put( fileItem.fullpath, fileItem );
+		}
+	}
+
+	// until interrupted
+
+	public void watch() throws IOException, InterruptedException {
+
+		try( WatchService service = FileSystems.getDefault().newWatchService() ) {
+
+			register( service, root, null );
+			findings = findings();
+
+			// the updates write their findings only, and are not measured (the phases would pile up for the life of the process)
+			fp.quiet = true;
+			fp.instrumentation = null;
+
+			reporter.console( Level.RESULT, "watching %d folders of %s for changes of the sources\n", folderOf.size(), progFolder );
+
+			while( true ) {
+
+				Set<Path> changed = new LinkedHashSet<Path>();
+				boolean overflow = false;
+
+				for( WatchKey key = service.take() ; key != null ; key = service.poll( quietMillis, TimeUnit.MILLISECONDS )) {
+
+					Path folder = folderOf.get( key );
+
+					for( WatchEvent<?> event : key.pollEvents() ) {
+
+						if( event.kind() == StandardWatchEventKinds.OVERFLOW || folder == null ) {
+							overflow = true; // events lost : every known source is taken as modified
+							continue;
+						}
+
+						Path path = folder.resolve( (Path)event.context() );
+
+						if( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path ) ) {
+
+							// a new folder : watched too, the files already into it are new sources (the excluded folders skipped as by the walk)
+							register( service, path, changed );
+						}
+						changed.add( path );
+					}
+
+					if( key.reset() == false ) {
+						folderOf.remove( key ); // folder removed
+					}
+				}
+
+				if( overflow ) {
+					for( FileItem fileItem : sources ) {
+						changed.add( Paths.get( fileItem.fullpath ));
+					}
+				}
+
+				try {
+					update( changed );
+				}
+				catch( IOException e ) {
+
+					// as a source removed while read : the next change rebuilds the index
+					reporter.console( Level.WARNING, "update of the index failed (%s), rebuilt on the next change\n", e );
+					stale = true;
+				}
+			}
+		}
+	}
+
+	// the files found are added to files (null : registration only)
+
+	void register( WatchService service, Path folder, Set<Path> files ) throws IOException {
+
+		Files.walkFileTree( folder, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) throws IOException {
+
+				// the folders skipped by the walk of the sources (msvc10, gmake3, obj ...)
+				if( dir.equals( root ) == false && FolderWalker.isExcludedSourceFolder( dir.getFileName().toString() ) ) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+
+				WatchKey key = dir.register( service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY );
+				folderOf.put( key, dir );
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) {
+
+				if( files != null && attrs.isRegularFile() ) {
+					files.add( file );
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed( Path file, IOException e ) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	// ------- update -------------
+
+	void update( Set<Path> changed ) throws IOException {
+
+		long start = System.nanoTime();
+
+		List<FileItem> modified = new ArrayList<FileItem>();
+		boolean filesChanged = false; // sources added or removed
+
+		for( Path path : changed ) {
+
+			String fullpath = path.toAbsolutePath().toString();
+			FileItem known = sourceOf.get( fullpath );
+
+			if( Files.isRegularFile( path ) ) {
+
+				if( known != null ) {
+					modified.add( known );
+				}
+				else {
+
+					String name = path.getFileName().toString();
+
+					if( FolderWalker.isSource( name, FilenameUtils.getExtension( name )) ) {
+
+						// folder named as the walk does : as given for the root, absolute below
+						Path folder = path.toAbsolutePath().getParent();
+						FileItem fileItem = table.add( folder.equals( root ) ? progFolder : folder.toString(), name, fullpath );
+
+						sources.add( fileItem );
+						sourceOf.put( fullpath, fileItem );
+						filesChanged = true;
+					}
+				}
+			}
+			else if( Files.exists( path ) == false ) {
+
+				// a source removed, or a folder of sources
+
+				String folderPrefix = fullpath + File.separator;
+				List<FileItem> removed = new ArrayList<FileItem>();
+
+				for( FileItem fileItem : sources ) {
+					if( fileItem.fullpath.equals( fullpath ) || fileItem.fullpath.startsWith( folderPrefix ) ) {
+						removed.add( fileItem );
+					}
+				}
+
+				for( FileItem fileItem : removed ) {
+					sources.remove( fileItem );
+					sourceOf.remove( fileItem.fullpath );
+					filesChanged = true;
+				}
+			}
+		}
+
+		if( modified.isEmpty() && filesChanged == false ) {
+			return; // not a source
+		}
+
+		if( stale ) {
+			r.declarationsOfFiles = new FileParser.FileDeclarations[0]; // all read again
+			filesChanged = true;
+			stale = false;
+		}
+
+		List<FileItem> declaring = CodeCheck.withoutProCGenerated( sources, null );
+		Set<Integer> declaringIds = new HashSet<Integer>();
+		for( FileItem fileItem : declaring ) {
+			declaringIds.add( fileItem.id );
+		}
+
+		boolean rebuilt = filesChanged;
+
+		if( filesChanged == false ) {
+
+			for( FileItem fileItem : modified ) {
+
+				if( declaringIds.contains( fileItem.id ) == false && useOnly.contains( fileItem ) == false ) {
+					continue; // Pro*C generated
+				}
+				if( fp.updateFile( fileItem, r, reporter ) == false ) {
+					rebuilt = true; // its new declarations are kept for the rebuild
+				}
+			}
+		}
+		else {
+
+			// the declarations of the modified sources are to be parsed again with the new ones
+			for( FileItem fileItem : modified ) {
+				if( fileItem.id < r.declarationsOfFiles.length ) {
+					r.declarationsOfFiles[fileItem.id] = null;
+				}
+			}
+		}
+
+		if( rebuilt ) {
+
+			List<FileItem> fileItems = new ArrayList<FileItem>( declaring );
+			fileItems.addAll( useOnly );
+			r = fp.rebuild( declaring, fileItems, r, reporter );
+		}
+
+		report( modified.size(), rebuilt, start );
+	}
+
+	// ------- report -------------
+
+	List<String> findings() {
+
+		BitSet reached = CodeCheck.reachableFunctions( r, reporter );
+
+		List<String> lines = new ArrayList<String>();
+		for( int symbolId : CodeCheck.unreferencedFunctions( r, table, reached ) ) {
+			lines.add( CodeCheck.finding( r, table, symbolId ));
+		}
+		return lines;
+	}
+
+	void report( int modifiedCount, boolean rebuilt, long start ) throws IOException {
+
+		List<String> current = findings();
+		long updateNanos = System.nanoTime() - start; // from the events to the findings
+
+		Set<String> previousSet = new HashSet<String>( findings );
+		Set<String> currentSet = new HashSet<String>( current );
+
+		for( String finding : findings ) {
+			if( currentSet.contains( finding ) == false ) {
+				reporter.both( Level.RESULT, "- %s\n", finding );
+			}
+		}
+		for( String finding : current ) {
+			if( previousSet.contains( finding ) == false ) {
+				reporter.both( Level.RESULT, "+ %s\n", finding );
+			}
+		}
+
+		findings = current;
+
+		reporter.both( Level.RESULT, " ==== %d sources modified, %s in %.1f ms : %d unreferenced or unreachable functions\n",
+			modifiedCount, rebuilt ? "index rebuilt" : "index updated", updateNanos / 1e6, current.size() );
+
+		reporter.flush();
+	}
+}
@@ -0,0 +1,220 @@
+package pri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the declared functions, identified by a dense id (order of declaration) and stored by columns :
+// the names are kept into a single char pool, found again from a slice of chars without building a String,
+// the declaration location, the linkage and the use count are primitives, the types are interned
+// the static functions of different files may share a name : the symbols of a name are chained from the first one
+
+public class SymbolTable {
+
+	char[] pool = new char[1 << 12];
+	int poolLength = 0;
+	int[] nameStarts = new int[257]; // name of id is pool[nameStarts[id],nameStarts[id + 1])
+	int[] hashes = new int[256];
+
+	public int[] typeIds = new int[256];
+	public int[] fileIds = new int[256]; // declaration file, into the file table
+	public int[] lineNums = new int[256]; // declaration line, from 1
+	public int[] useCounts = new int[256];
+	public boolean[] isStatic = new boolean[256]; // file local linkage
+	public int[] nextSameName = new int[256]; // next symbol of the same name or -1
+	int[] firstIds = new int[256]; // first symbol of the same name
+	int count = 0;
+
+	List<String> types = new ArrayList<String>();
+	Map<String,Integer> typeIdOf = new HashMap<String,Integer>();
+
+	// open addressing (linear probing) from the hash of the name to id + 1, 0 is a free slot
+	int[] slots = new int[512];
+
+	// ------- addition -------------
+
+	public int add( String name, String type, boolean isStatic, int fileId, int lineNum ) {
+
+		if( count == fileIds.length ) {
+
+			int capacity = count * 2;
+			nameStarts = Arrays.copyOf( nameStarts, capacity + 1 );
+			hashes = Arrays.copyOf( hashes, capacity );
+			typeIds = Arrays.copyOf( typeIds, capacity );
+			fileIds = Arrays.copyOf( fileIds, capacity );
+			lineNums = Arrays.copyOf( lineNums, capacity );
+			useCounts = Arrays.copyOf( useCounts, capacity );
+			this.isStatic = Arrays.copyOf( this.isStatic, capacity );
+			nextSameName = Arrays.copyOf( nextSameName, capacity );
+			firstIds = Arrays.copyOf( firstIds, capacity );
+		}
+
+		int firstId = find( name );
+
+		if( poolLength + name.length() > pool.length ) {
+			pool = Arrays.copyOf( pool, Math.max( pool.length * 2, poolLength + name.length() ));
+		}
+
+		int id = count++;
+
+		name.getChars( 0, name.length(), pool, poolLength );
+		nameStarts[id] = poolLength;
+		poolLength += name.length();
+		nameStarts[id + 1] = poolLength;
+
+		hashes[id] = hash( pool, nameStarts[id], poolLength );
+		typeIds[id] = FileTable.intern( type, types, typeIdOf );
+		fileIds[id] = fileId;
+		lineNums[id] = lineNum;
+		useCounts[id] = 0;
+		this.isStatic[id] = isStatic;
+		nextSameName[id] = -1;
+		firstIds[id] = ( firstId != -1 ) ? firstId : id;
+
+		if( firstId != -1 ) {
+
+			// chained after the symbols of the same name, only the first one is into the slots
+
+			int lastId = firstId;
+			while( nextSameName[lastId] != -1 ) {
+				lastId = nextSameName[lastId];
+			}
+			nextSameName[lastId] = id;
+		}
+		else if( count * 2 > slots.length ) {
+			rehash( slots.length * 2 );
+		}
+		else {
+			insert( id );
+		}
+
+		return id;
+	}
+
+	void rehash( int capacity ) {
+
+		slots = new int[capacity];
+		for( int id = 0 ; id < count ; id++ ) {
+			if( isFirstOfName( id ) ) {
+				insert( id );
+			}
+		}
+	}
+
+	void insert( int id ) {
+
+		int mask = slots.length - 1;
+		int slot = home( hashes[id], slots.length );
+
+		while( slots[slot] != 0 ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		slots[slot] = id + 1;
+	}
+
+	// ------- lookup -------------
+
+	// home slot of a hash into a power of two table : its bits spread by a multiplication
+	// (the names differ by their last chars, their hashes by their low bits only, which cluster under linear probing)
+
+	static int home( int h, int slotCount ) {
+		return ( h * 0x9E3779B9 ) >>> Integer.numberOfLeadingZeros( slotCount - 1 );
+	}
+
+	static int hash( char[] text, int start, int end ) {
+
+		int h = 0;
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+			h = 31 * h + text[chpos];
+		}
+		return h ^ ( h >>> 16 );
+	}
+
+	static int hash( CharSequence text, int start, int end ) {
+
+		int h = 0;
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+			h = 31 * h + text.charAt( chpos );
+		}
+		return h ^ ( h >>> 16 );
+	}
+
+	// id of the first symbol of the name text[start,end) or -1
+
+	public int find( char[] text, int start, int end ) {
+
+		int h = hash( text, start, end );
+		int mask = slots.length - 1;
+
+		for( int slot = home( h, slots.length ) ; slots[slot] != 0 ; slot = ( slot + 1 ) & mask ) {
+
+			int id = slots[slot] - 1;
+			if( hashes[id] == h && Arrays.equals( pool, nameStarts[id], nameStarts[id + 1], text, start, end ) ) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	public int find( CharSequence text, int start, int end ) {
+
+		int h = hash( text, start, end );
+		int mask = slots.length - 1;
+
+		for( int slot = home( h, slots.length ) ; slots[slot] != 0 ; slot = ( slot + 1 ) & mask ) {
+
+			int id = slots[slot] - 1;
+			if( hashes[id] == h && nameEquals( id, text, start, end ) ) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	public int find( CharSequence name ) {
+		return find( name, 0, name.length() );
+	}
+
+	boolean nameEquals( int id, CharSequence text, int start, int end ) {
+
+		int nameStart = nameStarts[id];
+
+		if( nameStarts[id + 1] - nameStart != end - start ) {
+			return false;
+		}
+		for( int chpos = start ; chpos < end ; chpos++ ) {
+			if( pool[nameStart + chpos - start] != text.charAt( chpos ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isFirstOfName( int id ) {
+		return firstIds[id] == id;
+	}
+
+	// ------- columns -------------
+
+	public String name( int id ) {
+		return new String( pool, nameStarts[id], nameStarts[id + 1] - nameStarts[id] );
+	}
+
+	public int nameStart( int id ) {
+		return nameStarts[id];
+	}
+
+	public int nameEnd( int id ) {
+		return nameStarts[id + 1];
+	}
+
+	public String type( int id ) {
+		return types.get( typeIds[id] );
+	}
+
+	public int size() {
+		return count;
+	}
+}